@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс чанков мира на картах разного размера: проверка перед сканированием
+ * ({@code lastScanned} в {@code scanChunk}) и слияние пачки результатов сканера.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChunkIndexBenchmark {
+
+    private static final int BATCH = 64;
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    private ChunkIndex index;
+    private long[] keys;
+    private int[] redstone;
+    private int[] entities;
+    private long[] batchKeys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        index = new ChunkIndex();
+        keys = new long[chunks];
+        int side = (int) Math.ceil(Math.sqrt(chunks));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < chunks; i++) {
+            keys[i] = RedstoneDetector.ChunkCoordinate.key(i % side - side / 2, i / side - side / 2);
+            index.applyScan(keys[i], random.nextInt(200), random.nextInt(50), now);
+        }
+        // Перемешиваем, чтобы обращения не шли по порядку вставки
+        for (int i = chunks - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+        }
+        redstone = new int[BATCH];
+        entities = new int[BATCH];
+        batchKeys = new long[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            redstone[i] = random.nextInt(200);
+            entities[i] = random.nextInt(50);
+        }
+    }
+
+    @Benchmark
+    public long lastScanned() {
+        long key = keys[next];
+        next = next + 1 == chunks ? 0 : next + 1;
+        return index.lastScanned(key);
+    }
+
+    // Одна пачка сканера: 64 результата под одной блокировкой записи
+    @Benchmark
+    public void applyScans() {
+        for (int i = 0; i < BATCH; i++) {
+            batchKeys[i] = keys[next];
+            next = next + 1 == chunks ? 0 : next + 1;
+        }
+        index.applyScans(batchKeys, redstone, entities, BATCH, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Обработчик {@code onBlockPhysics} плагина без объекта события: вызывается тот же
+ * {@link RedstoneDetector#handlePhysics}, что и из события. Плагин создаётся защищённым
+ * конструктором без включения, сервер - заглушка, к которой обработчик не обращается.
+ * Параметры: число чанков, по которым распределены события, и число замороженных чанков.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhysicsEventBenchmark {
+
+    private static final int EVENTS = 4096;
+
+    @Param({"1000", "100000"})
+    public int chunks;
+
+    @Param({"0", "1000"})
+    public int frozen;
+
+    @Param({"0.1", "0.9"})
+    public double redstoneShare;
+
+    private final UUID world = UUID.randomUUID();
+    private RedstoneDetector plugin;
+    private Material[] types;
+    private int[] chunkX;
+    private int[] chunkZ;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        int side = (int) Math.ceil(Math.sqrt(chunks));
+        plugin = createPlugin();
+        for (int i = 0; i < frozen; i++) {
+            plugin.getFrozenChunks().freezeChunk(world, random.nextInt(side), random.nextInt(side));
+        }
+
+        List<Material> other = new ArrayList<>();
+        for (Material material : Material.values()) {
+            if (material.isBlock() && !material.name().startsWith("LEGACY_") && !RedstoneMaterials.contains(material)) {
+                other.add(material);
+            }
+        }
+        Material[] redstone = {Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR, Material.OBSERVER, Material.PISTON};
+        types = new Material[EVENTS];
+        chunkX = new int[EVENTS];
+        chunkZ = new int[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            types[i] = random.nextDouble() < redstoneShare
+                    ? redstone[random.nextInt(redstone.length)]
+                    : other.get(random.nextInt(other.size()));
+            chunkX[i] = random.nextInt(side);
+            chunkZ[i] = random.nextInt(side);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void onBlockPhysics(Blackhole blackhole) {
+        for (int i = 0; i < EVENTS; i++) {
+            blackhole.consume(plugin.handlePhysics(types[i], world, chunkX[i], chunkZ[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void isRedstoneComponent(Blackhole blackhole) {
+        for (int i = 0; i < EVENTS; i++) {
+            blackhole.consume(RedstoneMaterials.contains(types[i]));
+        }
+    }
+
+    // Как в нагрузочном стенде (loadtest/), но без onEnable: обработчику нужны только поля плагина
+    private static RedstoneDetector createPlugin() throws IOException {
+        Logger logger = Logger.getLogger("RedstoneDetector-benchmark");
+        Server server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                (proxy, method, args) -> method.getName().equals("getLogger") ? logger : null);
+        File dataFolder = Files.createTempDirectory("redstonedetector-bench").toFile();
+        PluginDescriptionFile description = new PluginDescriptionFile("RedstoneDetector", "benchmark", RedstoneDetector.class.getName());
+        return new RedstoneDetector(new JavaPluginLoader(server), description, dataFolder, new File(dataFolder, "plugin.jar"));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Сохранение данных о чанках ({@code saveChunkData}): снимок изменённых записей в главном потоке
+ * и запись снимка в двоичный файл. Перед каждым вызовом помечается изменённой доля чанков.
+ * Параметры: размер карты в чанках и доля изменённых с прошлого сохранения.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SaveBenchmark {
+
+    private static final String WORLD = "world";
+
+    @Param({"1000", "10000", "100000"})
+    public int chunks;
+
+    @Param({"0.01", "1.0"})
+    public double dirtyShare;
+
+    private Path directory;
+    private ChunkDataStorage storage;
+    private ChunkIndex index;
+    private long[] keys;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rd-bench");
+        storage = new ChunkDataStorage(directory.toFile(), Logger.getLogger("RedstoneDetector-Benchmark"));
+        index = new ChunkIndex();
+        random = new SplittableRandom(42);
+        keys = new long[chunks];
+        int side = (int) Math.ceil(Math.sqrt(chunks));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < chunks; i++) {
+            keys[i] = RedstoneDetector.ChunkCoordinate.key(i % side - side / 2, i / side - side / 2);
+            index.applyScan(keys[i], random.nextInt(200), random.nextInt(50), now);
+        }
+        // Первое сохранение создаёт файл; дальше измеряется перезапись изменённых записей
+        ChunkDataStorage.Snapshot snapshot = storage.snapshot(WORLD, index);
+        storage.write(List.of(snapshot)).join();
+    }
+
+    @Setup(Level.Invocation)
+    public void touch() {
+        int count = Math.max(1, (int) (chunks * dirtyShare));
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            index.adjustRedstone(keys[random.nextInt(chunks)], random.nextBoolean() ? 1 : -1, now);
+        }
+    }
+
+    // Часть сохранения, выполняемая в главном потоке
+    @Benchmark
+    public ChunkDataStorage.Snapshot snapshot() {
+        return storage.snapshot(WORLD, index);
+    }
+
+    @Benchmark
+    public int snapshotAndWrite() {
+        ChunkDataStorage.Snapshot snapshot = storage.snapshot(WORLD, index);
+        return snapshot == null ? 0 : storage.write(List.of(snapshot)).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        storage.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
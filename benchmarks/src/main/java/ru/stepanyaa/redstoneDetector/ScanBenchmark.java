@@ -0,0 +1,99 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсчёт редстоуна в снимке чанка (то, что делает поток сканера после {@code scanChunk}).
+ * Параметры: плотность редстоуна и высота мира - 0..256 (1.16) и -64..320 (1.18+).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    private static final int SNAPSHOTS = 64;
+
+    @Param({"0", "0.001", "0.01", "0.1"})
+    public double density;
+
+    @Param({"0:256", "-64:320"})
+    public String height;
+
+    private SyntheticChunkSnapshot[] snapshots;
+    private int minHeight;
+    private int maxHeight;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] bounds = height.split(":");
+        minHeight = Integer.parseInt(bounds[0]);
+        maxHeight = Integer.parseInt(bounds[1]);
+        // Несколько разных снимков, чтобы предсказатель ветвлений не запомнил один чанк
+        snapshots = new SyntheticChunkSnapshot[SNAPSHOTS];
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            snapshots[i] = new SyntheticChunkSnapshot(i, 0, minHeight, maxHeight, density, i);
+            int counted = ChunkScanner.countRedstone(snapshots[i], minHeight, maxHeight);
+            if (counted != snapshots[i].redstoneCount()) {
+                throw new IllegalStateException("Counted " + counted + ", expected " + snapshots[i].redstoneCount());
+            }
+        }
+    }
+
+    private SyntheticChunkSnapshot nextSnapshot() {
+        SyntheticChunkSnapshot snapshot = snapshots[next];
+        next = (next + 1) & (SNAPSHOTS - 1);
+        return snapshot;
+    }
+
+    @Benchmark
+    public int countRedstone() {
+        return ChunkScanner.countRedstone(nextSnapshot(), minHeight, maxHeight);
+    }
+
+    // Поиск позиций для отключения редстоуна в чанке
+    @Benchmark
+    public int[] findRedstone() {
+        return ChunkScanner.findRedstone(nextSnapshot(), minHeight, maxHeight);
+    }
+}
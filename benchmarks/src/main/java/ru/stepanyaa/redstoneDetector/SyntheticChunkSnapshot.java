@@ -0,0 +1,161 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.block.data.BlockData;
+
+import java.util.SplittableRandom;
+
+/**
+ * Снимок чанка для бенчмарков: блоки хранятся в массиве, секции без блоков помечены пустыми.
+ * Нижние секции до уровня поверхности заполнены камнем, редстоун раскладывается
+ * случайно с заданной плотностью (доля блоков сплошных секций).
+ * <p>
+ * Методы объявлены без @Override, чтобы класс собирался с разными версиями API.
+ */
+final class SyntheticChunkSnapshot implements ChunkSnapshot {
+
+    // Редстоун, встречающийся в реальных постройках; позиции выбираются из этого набора
+    private static final Material[] REDSTONE = {
+            Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR,
+            Material.PISTON, Material.STICKY_PISTON, Material.OBSERVER,
+            Material.HOPPER, Material.DROPPER, Material.REDSTONE_TORCH
+    };
+    private static final int SURFACE_Y = 64;
+
+    private final int chunkX;
+    private final int chunkZ;
+    private final int minHeight;
+    private final Material[] blocks;
+    private final boolean[] emptySections;
+    private final int redstoneCount;
+
+    SyntheticChunkSnapshot(int chunkX, int chunkZ, int minHeight, int maxHeight, double density, long seed) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.minHeight = minHeight;
+        int sections = (maxHeight - minHeight) >> 4;
+        this.blocks = new Material[sections << 12];
+        this.emptySections = new boolean[sections];
+
+        SplittableRandom random = new SplittableRandom(seed);
+        int solidSections = Math.min(sections, Math.max(1, (SURFACE_Y - minHeight) >> 4));
+        int placed = 0;
+        for (int section = 0; section < sections; section++) {
+            boolean solid = section < solidSections;
+            emptySections[section] = !solid;
+            for (int i = section << 12; i < (section + 1) << 12; i++) {
+                if (!solid) {
+                    blocks[i] = Material.AIR;
+                } else if (random.nextDouble() < density) {
+                    blocks[i] = REDSTONE[random.nextInt(REDSTONE.length)];
+                    placed++;
+                } else {
+                    blocks[i] = Material.STONE;
+                }
+            }
+        }
+        this.redstoneCount = placed;
+    }
+
+    int redstoneCount() {
+        return redstoneCount;
+    }
+
+    private int index(int x, int y, int z) {
+        return (y - minHeight) << 8 | z << 4 | x;
+    }
+
+    public int getX() {
+        return chunkX;
+    }
+
+    public int getZ() {
+        return chunkZ;
+    }
+
+    public String getWorldName() {
+        return "world";
+    }
+
+    public Material getBlockType(int x, int y, int z) {
+        return blocks[index(x, y, z)];
+    }
+
+    public BlockData getBlockData(int x, int y, int z) {
+        throw new UnsupportedOperationException();
+    }
+
+    public int getData(int x, int y, int z) {
+        return 0;
+    }
+
+    public int getBlockSkyLight(int x, int y, int z) {
+        return 0;
+    }
+
+    public int getBlockEmittedLight(int x, int y, int z) {
+        return 0;
+    }
+
+    public int getHighestBlockYAt(int x, int z) {
+        return SURFACE_Y;
+    }
+
+    public Biome getBiome(int x, int z) {
+        return Biome.PLAINS;
+    }
+
+    public Biome getBiome(int x, int y, int z) {
+        return Biome.PLAINS;
+    }
+
+    public double getRawBiomeTemperature(int x, int z) {
+        return 0.8;
+    }
+
+    public double getRawBiomeTemperature(int x, int y, int z) {
+        return 0.8;
+    }
+
+    public long getCaptureFullTime() {
+        return 0;
+    }
+
+    public boolean isSectionEmpty(int sy) {
+        return emptySections[sy];
+    }
+
+    public boolean contains(BlockData block) {
+        return false;
+    }
+
+    public boolean contains(Biome biome) {
+        return biome == Biome.PLAINS;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Менеджер плагинов стенда: регистрирует обработчики {@link EventHandler} и вызывает их
+ * как Bukkit - по точному классу события, в порядке приоритета, с учётом ignoreCancelled.
+ */
+final class EventBus {
+
+    private record Handler(Listener listener, Method method, EventPriority priority, boolean ignoreCancelled) {
+    }
+
+    private static final Handler[] NONE = new Handler[0];
+
+    private final PluginManager pluginManager = Stub.of(PluginManager.class, this);
+    private final Map<Class<?>, Handler[]> handlers = new ConcurrentHashMap<>();
+    private final Consumer<Throwable> errorHandler;
+
+    EventBus(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    PluginManager bukkit() {
+        return pluginManager;
+    }
+
+    void clear() {
+        handlers.clear();
+    }
+
+    // Методы PluginManager, которые вызывает плагин
+
+    synchronized void registerEvents(Listener listener, Plugin plugin) {
+        for (Class<?> type = listener.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                EventHandler annotation = method.getAnnotation(EventHandler.class);
+                if (annotation == null || method.getParameterCount() != 1 || method.isBridge()) continue;
+
+                Class<?> eventType = method.getParameterTypes()[0];
+                if (!Event.class.isAssignableFrom(eventType)) continue;
+
+                method.setAccessible(true);
+                List<Handler> list = new ArrayList<>(List.of(handlers.getOrDefault(eventType, NONE)));
+                list.add(new Handler(listener, method, annotation.priority(), annotation.ignoreCancelled()));
+                list.sort(Comparator.comparingInt(handler -> handler.priority().ordinal()));
+                handlers.put(eventType, list.toArray(NONE));
+            }
+        }
+    }
+
+    void callEvent(Event event) {
+        for (Handler handler : handlers.getOrDefault(event.getClass(), NONE)) {
+            if (handler.ignoreCancelled() && event instanceof Cancellable cancellable && cancellable.isCancelled()) {
+                continue;
+            }
+            try {
+                handler.method().invoke(handler.listener(), event);
+            } catch (InvocationTargetException e) {
+                errorHandler.accept(e.getCause());
+            } catch (IllegalAccessException e) {
+                errorHandler.accept(e);
+            }
+        }
+    }
+}
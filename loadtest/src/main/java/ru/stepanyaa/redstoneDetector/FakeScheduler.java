@@ -0,0 +1,187 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Планировщик стенда с семантикой Bukkit: задачи выполняются в главном потоке по тикам,
+ * которые отсчитывает {@link #tick()}. Задача с задержкой 0 выполняется в следующем тике.
+ * Планировать задачи можно из любого потока.
+ */
+final class FakeScheduler {
+
+    private final BukkitScheduler scheduler = Stub.of(BukkitScheduler.class, this);
+    private final Queue<Task> incoming = new ConcurrentLinkedQueue<>();
+    private final List<Task> tasks = new ArrayList<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Consumer<Throwable> errorHandler;
+    private volatile long currentTick;
+
+    FakeScheduler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    BukkitScheduler bukkit() {
+        return scheduler;
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Следующий тик сервера: выполняет задачи, срок которых наступил.
+     */
+    void tick() {
+        long now = ++currentTick;
+        Task task;
+        while ((task = incoming.poll()) != null) {
+            tasks.add(task);
+        }
+        Iterator<Task> iterator = tasks.iterator();
+        while (iterator.hasNext()) {
+            task = iterator.next();
+            if (task.cancelled) {
+                iterator.remove();
+                continue;
+            }
+            if (task.nextTick > now) continue;
+
+            try {
+                task.runnable.run();
+            } catch (Throwable e) {
+                errorHandler.accept(e);
+            }
+            if (task.period > 0 && !task.cancelled) {
+                task.nextTick = now + task.period;
+            } else {
+                iterator.remove();
+            }
+        }
+    }
+
+    void clear() {
+        incoming.clear();
+        tasks.clear();
+    }
+
+    private BukkitTask schedule(Plugin plugin, Runnable runnable, long delay, long period) {
+        Task task = new Task(ids.incrementAndGet(), plugin, runnable, currentTick + Math.max(1, delay), period);
+        incoming.add(task);
+        return task.bukkit;
+    }
+
+    // Методы BukkitScheduler, которые вызывает плагин
+
+    BukkitTask runTask(Plugin plugin, Runnable task) {
+        return schedule(plugin, task, 0, 0);
+    }
+
+    BukkitTask runTaskLater(Plugin plugin, Runnable task, long delay) {
+        return schedule(plugin, task, delay, 0);
+    }
+
+    BukkitTask runTaskTimer(Plugin plugin, Runnable task, long delay, long period) {
+        return schedule(plugin, task, delay, Math.max(1, period));
+    }
+
+    int scheduleSyncDelayedTask(Plugin plugin, Runnable task, long delay) {
+        return runTaskLater(plugin, task, delay).getTaskId();
+    }
+
+    int scheduleSyncRepeatingTask(Plugin plugin, Runnable task, long delay, long period) {
+        return runTaskTimer(plugin, task, delay, period).getTaskId();
+    }
+
+    void cancelTask(int taskId) {
+        for (Task task : tasks) {
+            if (task.id == taskId) task.cancelled = true;
+        }
+        for (Task task : incoming) {
+            if (task.id == taskId) task.cancelled = true;
+        }
+    }
+
+    void cancelTasks(Plugin plugin) {
+        for (Task task : tasks) {
+            if (task.owner == plugin) task.cancelled = true;
+        }
+        for (Task task : incoming) {
+            if (task.owner == plugin) task.cancelled = true;
+        }
+    }
+
+    private static final class Task {
+        final int id;
+        final Plugin owner;
+        final Runnable runnable;
+        final long period;
+        final BukkitTask bukkit;
+        long nextTick;
+        volatile boolean cancelled;
+
+        Task(int id, Plugin owner, Runnable runnable, long nextTick, long period) {
+            this.id = id;
+            this.owner = owner;
+            this.runnable = runnable;
+            this.nextTick = nextTick;
+            this.period = period;
+            this.bukkit = Stub.of(BukkitTask.class, this);
+        }
+
+        // Методы BukkitTask
+
+        int getTaskId() {
+            return id;
+        }
+
+        Plugin getOwner() {
+            return owner;
+        }
+
+        boolean isSync() {
+            return true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Сервер стенда. Главный поток - поток, создавший сервер; время тика (MSPT) задаёт стенд.
+ */
+final class FakeServer {
+
+    private static final int TICK_HISTORY = 100;
+
+    private final Server server = Stub.of(Server.class, this);
+    private final Logger logger = Logger.getLogger("LoadTest");
+    private final Thread mainThread = Thread.currentThread();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final FakeScheduler scheduler = new FakeScheduler(this::reportError);
+    private final EventBus events = new EventBus(this::reportError);
+    private final List<World> worlds = new CopyOnWriteArrayList<>();
+    private final Map<String, PluginCommand> commands = new ConcurrentHashMap<>();
+    private final double[] tickTimes = new double[TICK_HISTORY];
+    private int tickCount;
+    private volatile double averageTickTime = 0;
+    private volatile Plugin plugin;
+
+    Server bukkit() {
+        return server;
+    }
+
+    FakeScheduler scheduler() {
+        return scheduler;
+    }
+
+    EventBus events() {
+        return events;
+    }
+
+    void setPlugin(Plugin plugin) {
+        this.plugin = plugin;
+        commands.clear();
+    }
+
+    void addWorld(World world) {
+        worlds.add(world);
+    }
+
+    void reset() {
+        worlds.clear();
+        commands.clear();
+        scheduler.clear();
+        events.clear();
+        tickCount = 0;
+        averageTickTime = 0;
+        plugin = null;
+    }
+
+    // Длительность тика без ожидания следующего, как в Paper
+    void recordTick(double milliseconds) {
+        tickTimes[tickCount++ % TICK_HISTORY] = milliseconds;
+        double sum = 0;
+        int count = Math.min(tickCount, TICK_HISTORY);
+        for (int i = 0; i < count; i++) {
+            sum += tickTimes[i];
+        }
+        averageTickTime = sum / count;
+    }
+
+    int errors() {
+        return errors.get();
+    }
+
+    private void reportError(Throwable error) {
+        errors.incrementAndGet();
+        logger.log(Level.SEVERE, "Plugin error", error);
+    }
+
+    // Методы Server, которые вызывает плагин и Bukkit
+
+    String getName() {
+        return "RedstoneDetector-LoadTest";
+    }
+
+    String getVersion() {
+        return "loadtest";
+    }
+
+    String getBukkitVersion() {
+        return "1.16.5-R0.1-SNAPSHOT";
+    }
+
+    Logger getLogger() {
+        return logger;
+    }
+
+    List<World> getWorlds() {
+        return List.copyOf(worlds);
+    }
+
+    World getWorld(String name) {
+        for (World world : worlds) {
+            if (world.getName().equals(name)) return world;
+        }
+        return null;
+    }
+
+    World getWorld(UUID uid) {
+        for (World world : worlds) {
+            if (world.getUID().equals(uid)) return world;
+        }
+        return null;
+    }
+
+    PluginManager getPluginManager() {
+        return events.bukkit();
+    }
+
+    BukkitScheduler getScheduler() {
+        return scheduler.bukkit();
+    }
+
+    boolean isPrimaryThread() {
+        return Thread.currentThread() == mainThread;
+    }
+
+    int getCurrentTick() {
+        return (int) scheduler.currentTick();
+    }
+
+    double getAverageTickTime() {
+        return averageTickTime;
+    }
+
+    double[] getTPS() {
+        double tps = Math.min(20.0, 1000.0 / Math.max(1.0, averageTickTime));
+        return new double[]{tps, tps, tps};
+    }
+
+    PluginCommand getPluginCommand(String name) {
+        Plugin owner = plugin;
+        if (owner == null) return null;
+        return commands.computeIfAbsent(name, key -> {
+            try {
+                Constructor<PluginCommand> constructor = PluginCommand.class.getDeclaredConstructor(String.class, Plugin.class);
+                constructor.setAccessible(true);
+                return constructor.newInstance(key, owner);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create command " + key, e);
+            }
+        });
+    }
+}
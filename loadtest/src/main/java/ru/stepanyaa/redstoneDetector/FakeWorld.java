@@ -0,0 +1,228 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Мир стенда: квадрат side x side загруженных чанков с центром в (0, 0), высота -64..320.
+ * Объекты Bukkit ({@link World}, {@link Chunk}, {@link Block}) - заглушки {@link Stub} над этим классом.
+ */
+final class FakeWorld {
+
+    static final int MIN_HEIGHT = -64;
+    static final int MAX_HEIGHT = 320;
+
+    private final String name;
+    private final UUID uid = UUID.randomUUID();
+    private final World world;
+    private final Map<Long, FakeChunk> chunks = new HashMap<>();
+    private final Chunk[] loaded;
+
+    FakeWorld(String name, int side) {
+        this.name = name;
+        this.world = Stub.of(World.class, this);
+        SyntheticChunk empty = SyntheticChunk.empty(MIN_HEIGHT);
+        List<Chunk> all = new ArrayList<>(side * side);
+        int from = -side / 2;
+        for (int x = from; x < from + side; x++) {
+            for (int z = from; z < from + side; z++) {
+                FakeChunk chunk = new FakeChunk(x, z, empty);
+                chunks.put(RedstoneDetector.ChunkCoordinate.key(x, z), chunk);
+                all.add(chunk.chunk);
+            }
+        }
+        this.loaded = all.toArray(new Chunk[0]);
+    }
+
+    World bukkit() {
+        return world;
+    }
+
+    Chunk[] chunks() {
+        return loaded;
+    }
+
+    void setContent(int chunkX, int chunkZ, SyntheticChunk content) {
+        chunks.get(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ)).content = content;
+    }
+
+    SyntheticChunk content(int chunkX, int chunkZ) {
+        return chunks.get(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ)).content;
+    }
+
+    Block block(int x, int y, int z) {
+        return Stub.of(Block.class, new FakeBlock(x, y, z));
+    }
+
+    // Методы World, которые вызывает плагин
+
+    String getName() {
+        return name;
+    }
+
+    UUID getUID() {
+        return uid;
+    }
+
+    int getMinHeight() {
+        return MIN_HEIGHT;
+    }
+
+    int getMaxHeight() {
+        return MAX_HEIGHT;
+    }
+
+    World.Environment getEnvironment() {
+        return World.Environment.NORMAL;
+    }
+
+    boolean isChunkLoaded(int x, int z) {
+        return chunks.containsKey(RedstoneDetector.ChunkCoordinate.key(x, z));
+    }
+
+    Chunk getChunkAt(int x, int z) {
+        FakeChunk chunk = chunks.get(RedstoneDetector.ChunkCoordinate.key(x, z));
+        if (chunk == null) throw new IllegalArgumentException("Chunk " + x + ", " + z + " is outside the test world");
+        return chunk.chunk;
+    }
+
+    Chunk[] getLoadedChunks() {
+        return loaded.clone();
+    }
+
+    Block getBlockAt(int x, int y, int z) {
+        return block(x, y, z);
+    }
+
+    int getHighestBlockYAt(int x, int z) {
+        return SyntheticChunk.SURFACE_Y - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "FakeWorld{" + name + "}";
+    }
+
+    private final class FakeChunk {
+        final int x;
+        final int z;
+        final Chunk chunk;
+        volatile SyntheticChunk content;
+
+        FakeChunk(int x, int z, SyntheticChunk content) {
+            this.x = x;
+            this.z = z;
+            this.content = content;
+            this.chunk = Stub.of(Chunk.class, this);
+        }
+
+        int getX() {
+            return x;
+        }
+
+        int getZ() {
+            return z;
+        }
+
+        World getWorld() {
+            return world;
+        }
+
+        boolean isLoaded() {
+            return true;
+        }
+
+        ChunkSnapshot getChunkSnapshot() {
+            return content.snapshot(name, x, z);
+        }
+
+        ChunkSnapshot getChunkSnapshot(boolean includeMaxBlockY, boolean includeBiome, boolean includeBiomeTempRain) {
+            return content.snapshot(name, x, z);
+        }
+
+        Block getBlock(int localX, int y, int localZ) {
+            return block((x << 4) + localX, y, (z << 4) + localZ);
+        }
+    }
+
+    private final class FakeBlock {
+        final int x;
+        final int y;
+        final int z;
+        // Тип читается один раз: обработчики плагина вызывают getType() на каждое событие
+        final Material type;
+
+        FakeBlock(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = content(x >> 4, z >> 4).getBlockType(x & 15, y, z & 15);
+        }
+
+        int getX() {
+            return x;
+        }
+
+        int getY() {
+            return y;
+        }
+
+        int getZ() {
+            return z;
+        }
+
+        World getWorld() {
+            return world;
+        }
+
+        Chunk getChunk() {
+            return getChunkAt(x >> 4, z >> 4);
+        }
+
+        Material getType() {
+            return type;
+        }
+
+        boolean isEmpty() {
+            return getType() == Material.AIR;
+        }
+
+        @Override
+        public String toString() {
+            return "FakeBlock{" + x + ", " + y + ", " + z + "}";
+        }
+    }
+}
@@ -0,0 +1,500 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockRedstoneEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный стенд: загружает RedstoneDetector в заглушку сервера с тысячами синтетических чанков,
+ * проигрывает сценарии с лаг-машинами и измеряет время до реакции плагина, ложные срабатывания
+ * и время плагина за тик. Тики идут в реальном времени (50 мс), потому что плагин опирается
+ * на системные часы; работа ванильного сервера имитируется ожиданием.
+ * <p>
+ * Запуск: {@code mvn -P loadtest verify} в корне проекта. Код выхода 1, если лаг-машина не обнаружена,
+ * на безобидную схему была реакция или обработчики плагина бросили исключение.
+ */
+public final class LoadTest {
+
+    private static final long TICK_NANOS = 50_000_000L;
+    private static final int BLOCKS_PER_MACHINE = 32;
+    private static final int NOISE_BLOCKS = 512;
+    // Первые секунды уходят на первичное сканирование и заполнение окна обнаружения лагов
+    private static final int WARMUP_SECONDS = 5;
+    private static final Material[] LAG_PALETTE = {
+            Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR, Material.OBSERVER,
+            Material.PISTON, Material.STICKY_PISTON, Material.REDSTONE_TORCH, Material.HOPPER
+    };
+    private static final Material[] CLOCK_PALETTE = {
+            Material.REDSTONE_WIRE, Material.REPEATER, Material.REDSTONE_TORCH, Material.COMPARATOR
+    };
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final FakeServer server;
+    private final Scenario scenario;
+    private final File directory;
+    private final List<String> report = new ArrayList<>();
+    private final List<MachineState> machines = new ArrayList<>();
+    private final Map<Long, Long> backgroundCpu = new HashMap<>();
+    private long backgroundCpuTotal;
+    private Block[] noiseBlocks;
+
+    private LoadTest(FakeServer server, Scenario scenario, File directory) {
+        this.server = server;
+        this.scenario = scenario;
+        this.directory = directory;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File workDir = new File(args.length > 0 ? args[0] : "target/loadtest");
+        String filter = System.getProperty("loadtest.scenarios", "");
+        Set<String> only = new HashSet<>(Arrays.asList(filter.split(",")));
+        only.remove("");
+
+        // Плагин из IDE может быть собран без перемещения пакета bStats
+        System.setProperty("bstats.relocatecheck", "false");
+        FakeServer server = new FakeServer();
+        Bukkit.setServer(server.bukkit());
+
+        List<String> lines = new ArrayList<>();
+        boolean passed = true;
+        for (Scenario scenario : Scenario.builtIn()) {
+            if (!only.isEmpty() && !only.contains(scenario.name())) continue;
+
+            LoadTest test = new LoadTest(server, scenario, new File(workDir, scenario.name()));
+            passed &= test.run();
+            lines.addAll(test.report);
+            lines.add("");
+        }
+        lines.add(passed ? "LOAD TEST PASSED" : "LOAD TEST FAILED");
+
+        Files.createDirectories(workDir.toPath());
+        Files.write(new File(workDir, "report.txt").toPath(), lines, StandardCharsets.UTF_8);
+        System.out.println();
+        lines.forEach(System.out::println);
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        FakeWorld world = new FakeWorld("world", scenario.side());
+        setUpMachines(world);
+        server.reset();
+        server.addWorld(world.bukkit());
+
+        long enableStart = System.nanoTime();
+        RedstoneDetector plugin = enable();
+        long enableNanos = System.nanoTime() - enableStart;
+
+        // Сервер сообщает о загрузке каждого чанка при старте
+        Chunk[] chunks = world.chunks();
+        long loadStart = System.nanoTime();
+        for (Chunk chunk : chunks) {
+            server.events().callEvent(new ChunkLoadEvent(chunk, false));
+        }
+        long loadNanos = System.nanoTime() - loadStart;
+
+        int maxTicks = scenario.seconds() * 20 + 20;
+        long[] pluginWall = new long[maxTicks];
+        long[] pluginCpu = new long[maxTicks];
+        double[] tickMs = new double[maxTicks];
+        double[] tickSecond = new double[maxTicks];
+        long eventCount = 0;
+        long eventWall = 0;
+        int ticks = 0;
+
+        List<Event> events = new ArrayList<>();
+        List<MachineState> owners = new ArrayList<>();
+        long start = System.nanoTime();
+        long lastTickStart = start;
+        int lastSecond = -1;
+        while (ticks < maxTicks) {
+            long tickStart = System.nanoTime();
+            double second = (tickStart - start) / 1e9;
+            if (second >= scenario.seconds()) break;
+            int tick = ticks++;
+            tickSecond[tick] = second;
+            tickMs[tick] = (tickStart - lastTickStart) / 1e6;
+            lastTickStart = tickStart;
+            if ((int) second != lastSecond) {
+                lastSecond = (int) second;
+                sampleBackgroundCpu();
+            }
+
+            // Задачи плагина (сканирование, проверка лагов, сохранение)
+            long cpu = THREADS.getCurrentThreadCpuTime();
+            long wall = System.nanoTime();
+            server.scheduler().tick();
+            long tasksWall = System.nanoTime() - wall;
+            long tasksCpu = THREADS.getCurrentThreadCpuTime() - cpu;
+
+            // События построек этого тика
+            events.clear();
+            owners.clear();
+            for (MachineState state : machines) {
+                if (!state.machine.activeAt(second)) continue;
+                if (state.startNanos == 0) state.startNanos = tickStart;
+                state.addEvents(tick, events, owners);
+            }
+            SplittableRandom random = new SplittableRandom(tick);
+            for (int i = 0; i < scenario.noisePerTick(); i++) {
+                events.add(new BlockPhysicsEvent(noiseBlocks[random.nextInt(noiseBlocks.length)], null));
+                owners.add(null);
+            }
+
+            cpu = THREADS.getCurrentThreadCpuTime();
+            wall = System.nanoTime();
+            for (Event event : events) {
+                server.events().callEvent(event);
+            }
+            long dispatchWall = System.nanoTime() - wall;
+            long dispatchCpu = THREADS.getCurrentThreadCpuTime() - cpu;
+            eventCount += events.size();
+            eventWall += dispatchWall;
+            pluginWall[tick] = tasksWall + dispatchWall;
+            pluginCpu[tick] = tasksCpu + dispatchCpu;
+
+            // Прошедшие события стоят серверу времени; заблокированные - реакция плагина
+            long vanillaMicros = 0;
+            long now = System.nanoTime();
+            for (int i = 0; i < events.size(); i++) {
+                MachineState owner = owners.get(i);
+                if (owner == null) continue;
+                if (passed(events.get(i))) {
+                    vanillaMicros += owner.machine.costMicros();
+                    owner.passed++;
+                } else {
+                    owner.blocked++;
+                    if (owner.reactionNanos == 0) {
+                        owner.reactionNanos = now;
+                        owner.reactionTick = tick;
+                    }
+                }
+            }
+            for (MachineState state : machines) {
+                state.observe(plugin, now);
+            }
+
+            // Работа остального сервера, затем ожидание начала следующего тика
+            long workEnd = Math.max(System.nanoTime(), tickStart + (long) (scenario.baseTickMs() * 1_000_000) + vanillaMicros * 1000);
+            parkUntil(workEnd);
+            server.recordTick((workEnd - tickStart) / 1e6);
+            parkUntil(Math.max(workEnd, tickStart + TICK_NANOS));
+        }
+        sampleBackgroundCpu();
+        int errors = server.errors();
+        disable(plugin);
+
+        return report(ticks, enableNanos, chunks.length, loadNanos, pluginWall, pluginCpu, tickMs, tickSecond, eventCount, eventWall, errors);
+    }
+
+    private void setUpMachines(FakeWorld world) {
+        for (Scenario.Machine machine : scenario.machines()) {
+            Material[] palette = machine.pistonsPerTick() > 0 ? LAG_PALETTE : CLOCK_PALETTE;
+            SyntheticChunk content = SyntheticChunk.withRedstone(FakeWorld.MIN_HEIGHT, machine.components(), palette);
+            world.setContent(machine.chunkX(), machine.chunkZ(), content);
+
+            List<Block> signals = new ArrayList<>();
+            List<Block> pistons = new ArrayList<>();
+            for (int i = 0; i < content.redstoneCount(); i++) {
+                boolean piston = content.type(i) == Material.PISTON || content.type(i) == Material.STICKY_PISTON;
+                List<Block> target = piston ? pistons : signals;
+                if (target.size() >= BLOCKS_PER_MACHINE) continue;
+                target.add(world.block((machine.chunkX() << 4) + content.localX(i), content.y(i), (machine.chunkZ() << 4) + content.localZ(i)));
+            }
+            machines.add(new MachineState(machine, world.getName(), signals.toArray(new Block[0]), pistons.toArray(new Block[0])));
+        }
+
+        // Нередстоуновые блоки под поверхностью в случайных чанках
+        SplittableRandom random = new SplittableRandom(42);
+        int from = -scenario.side() / 2;
+        noiseBlocks = new Block[NOISE_BLOCKS];
+        for (int i = 0; i < NOISE_BLOCKS; i++) {
+            int chunkX = from + random.nextInt(scenario.side());
+            int chunkZ = from + random.nextInt(scenario.side());
+            noiseBlocks[i] = world.block((chunkX << 4) + random.nextInt(16), 40, (chunkZ << 4) + random.nextInt(16));
+        }
+    }
+
+    private RedstoneDetector enable() throws Exception {
+        deleteRecursively(directory.toPath());
+        File plugins = new File(directory, "plugins");
+        File dataFolder = new File(plugins, "RedstoneDetector");
+        Files.createDirectories(dataFolder.toPath());
+
+        // bStats выключен: стенд работает без сети
+        YamlConfiguration bStats = new YamlConfiguration();
+        bStats.set("enabled", false);
+        bStats.set("serverUuid", "00000000-0000-0000-0000-000000000000");
+        bStats.save(new File(new File(plugins, "bStats"), "config.yml"));
+
+        // Конфигурация по умолчанию с актуальной версией, чтобы плагин её не перезаписал
+        YamlConfiguration config;
+        try (InputStream in = RedstoneDetector.class.getResourceAsStream("/config.yml")) {
+            config = YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        config.set("config-version", "1.0.0");
+        config.save(new File(dataFolder, "config.yml"));
+
+        PluginDescriptionFile description;
+        try (InputStream in = RedstoneDetector.class.getResourceAsStream("/plugin.yml")) {
+            description = new PluginDescriptionFile(in);
+        }
+        File jar = new File(RedstoneDetector.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        RedstoneDetector plugin = new RedstoneDetector(new JavaPluginLoader(server.bukkit()), description, dataFolder, jar);
+        server.setPlugin(plugin);
+        setEnabled(plugin, true);
+        return plugin;
+    }
+
+    private void disable(RedstoneDetector plugin) throws Exception {
+        setEnabled(plugin, false);
+        server.reset();
+    }
+
+    private static void setEnabled(JavaPlugin plugin, boolean enabled) throws ReflectiveOperationException {
+        Method method = JavaPlugin.class.getDeclaredMethod("setEnabled", boolean.class);
+        method.setAccessible(true);
+        method.invoke(plugin, enabled);
+    }
+
+    private static boolean passed(Event event) {
+        if (event instanceof Cancellable cancellable) {
+            return !cancellable.isCancelled();
+        }
+        BlockRedstoneEvent redstone = (BlockRedstoneEvent) event;
+        return redstone.getNewCurrent() == 15 - redstone.getOldCurrent();
+    }
+
+    // Процессорное время фоновых потоков плагина (сканер, запись на диск)
+    private void sampleBackgroundCpu() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().startsWith("RedstoneDetector-")) continue;
+            long cpu = THREADS.getThreadCpuTime(thread.getId());
+            if (cpu < 0) continue;
+            Long previous = backgroundCpu.put(thread.getId(), cpu);
+            backgroundCpuTotal += cpu - (previous == null ? 0 : previous);
+        }
+    }
+
+    private static void parkUntil(long deadline) {
+        long left;
+        while ((left = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(left);
+        }
+    }
+
+    private boolean report(int ticks, long enableNanos, int chunkCount, long loadNanos, long[] pluginWall, long[] pluginCpu,
+                           double[] tickMs, double[] tickSecond, long eventCount, long eventWall, int errors) {
+        List<String> failures = new ArrayList<>();
+        line("== %s: %s ==", scenario.name(), scenario.description());
+        line("  %d ticks in %d s; plugin enabled in %.1f ms; %d chunk load events in %.1f ms",
+                ticks, scenario.seconds(), enableNanos / 1e6, chunkCount, loadNanos / 1e6);
+
+        int benign = 0;
+        int falsePositives = 0;
+        double lagStart = Double.MAX_VALUE;
+        for (MachineState state : machines) {
+            Scenario.Machine machine = state.machine;
+            if (machine.lag()) {
+                lagStart = Math.min(lagStart, machine.startSecond());
+                line("  lag machine %s [%d, %d]: first reaction %s, throttled %s, frozen %s; %d of %d signals blocked",
+                        machine.name(), machine.chunkX(), machine.chunkZ(),
+                        state.latency(state.reactionNanos, state.reactionTick), state.latency(state.throttleNanos, -1),
+                        state.latency(state.freezeNanos, -1), state.blocked, state.blocked + state.passed);
+                if (state.reactionNanos == 0) failures.add(machine.name() + " was not detected");
+            } else {
+                benign++;
+                if (state.blocked > 0 || state.throttleNanos != 0 || state.freezeNanos != 0) {
+                    falsePositives++;
+                    line("  false positive on %s [%d, %d]: %d of %d signals blocked, throttled %s, frozen %s",
+                            machine.name(), machine.chunkX(), machine.chunkZ(), state.blocked, state.blocked + state.passed,
+                            state.latency(state.throttleNanos, -1), state.latency(state.freezeNanos, -1));
+                }
+            }
+        }
+        line("  false positives: %d of %d benign machines", falsePositives, benign);
+        if (falsePositives > 0) failures.add(falsePositives + " false positive(s)");
+
+        long[] wall = Arrays.copyOf(pluginWall, ticks);
+        Arrays.sort(wall);
+        long cpuTotal = 0;
+        for (int i = 0; i < ticks; i++) cpuTotal += pluginCpu[i];
+        line("  plugin main thread per tick: avg %.3f ms, p50 %.3f ms, p95 %.3f ms, p99 %.3f ms, max %.3f ms (cpu avg %.3f ms)",
+                average(wall) / 1e6, percentile(wall, 0.50) / 1e6, percentile(wall, 0.95) / 1e6,
+                percentile(wall, 0.99) / 1e6, wall.length == 0 ? 0 : wall[wall.length - 1] / 1e6, ticks == 0 ? 0 : cpuTotal / 1e6 / ticks);
+        line("  plugin event handlers: %d events, %.0f ns per event", eventCount, eventCount == 0 ? 0 : (double) eventWall / eventCount);
+        line("  plugin background threads: %.3f ms cpu per tick", ticks == 0 ? 0 : backgroundCpuTotal / 1e6 / ticks);
+
+        if (lagStart == Double.MAX_VALUE) {
+            line("  server tick p95: %.1f ms", tickPercentile(tickMs, tickSecond, ticks, WARMUP_SECONDS, scenario.seconds()));
+        } else {
+            line("  server tick p95: before lag %.1f ms, first 5 s of lag %.1f ms, last 5 s %.1f ms",
+                    tickPercentile(tickMs, tickSecond, ticks, WARMUP_SECONDS, lagStart),
+                    tickPercentile(tickMs, tickSecond, ticks, lagStart, lagStart + 5),
+                    tickPercentile(tickMs, tickSecond, ticks, scenario.seconds() - 5, scenario.seconds()));
+        }
+        line("  plugin errors: %d", errors);
+        if (errors > 0) failures.add(errors + " plugin error(s)");
+
+        line("  RESULT: %s", failures.isEmpty() ? "PASS" : "FAIL (" + String.join(", ", failures) + ")");
+        return failures.isEmpty();
+    }
+
+    private void line(String format, Object... args) {
+        report.add(String.format(Locale.ROOT, format, args));
+    }
+
+    private static double average(long[] values) {
+        if (values.length == 0) return 0;
+        double sum = 0;
+        for (long value : values) sum += value;
+        return sum / values.length;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+    private static double tickPercentile(double[] tickMs, double[] tickSecond, int ticks, double from, double to) {
+        List<Long> values = new ArrayList<>();
+        for (int i = 1; i < ticks; i++) {
+            if (tickSecond[i] >= from && tickSecond[i] < to) values.add((long) (tickMs[i] * 1000));
+        }
+        long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+        return percentile(sorted, 0.95) / 1000.0;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Постройка во время прогона: её блоки, счётчики сигналов и моменты реакции плагина.
+     */
+    private static final class MachineState {
+        final Scenario.Machine machine;
+        final RedstoneDetector.ChunkCoordinate coord;
+        final Block[] signals;
+        final Block[] pistons;
+        long startNanos;
+        long reactionNanos;
+        int reactionTick;
+        long throttleNanos;
+        long freezeNanos;
+        long passed;
+        long blocked;
+        private int startTick = -1;
+
+        MachineState(Scenario.Machine machine, String world, Block[] signals, Block[] pistons) {
+            this.machine = machine;
+            this.coord = new RedstoneDetector.ChunkCoordinate(world, machine.chunkX(), machine.chunkZ());
+            this.signals = signals;
+            this.pistons = pistons;
+        }
+
+        void addEvents(int tick, List<Event> events, List<MachineState> owners) {
+            if (startTick < 0) startTick = tick;
+            for (int i = 0; i < machine.physicsPerTick(); i++) {
+                events.add(new BlockPhysicsEvent(signals[(tick * 7 + i) % signals.length], null));
+                owners.add(this);
+            }
+            for (int i = 0; i < machine.signalsPerTick(); i++) {
+                int old = ((tick + i) & 1) == 0 ? 0 : 15;
+                events.add(new BlockRedstoneEvent(signals[(tick * 3 + i) % signals.length], old, 15 - old));
+                owners.add(this);
+            }
+            for (int i = 0; i < machine.pistonsPerTick() && pistons.length > 0; i++) {
+                Block piston = pistons[(tick + i) % pistons.length];
+                events.add(((tick + i) & 1) == 0
+                        ? new BlockPistonExtendEvent(piston, List.of(), BlockFace.NORTH)
+                        : new BlockPistonRetractEvent(piston, List.of(), BlockFace.NORTH));
+                owners.add(this);
+            }
+        }
+
+        // Ступень реакции и заморозка чанка постройки
+        void observe(RedstoneDetector plugin, long now) {
+            if (startNanos == 0) return;
+            EscalationPipeline.Tier tier = plugin.getResponseTier(coord);
+            if (throttleNanos == 0 && tier.ordinal() >= EscalationPipeline.Tier.THROTTLE.ordinal()) {
+                throttleNanos = now;
+            }
+            if (freezeNanos == 0 && (tier.ordinal() >= EscalationPipeline.Tier.FREEZE.ordinal() || plugin.isChunkFrozen(coord))) {
+                freezeNanos = now;
+            }
+        }
+
+        String latency(long nanos, int tick) {
+            if (nanos == 0) return "never";
+            String seconds = String.format(Locale.ROOT, "%.2f s", (nanos - startNanos) / 1e9);
+            return tick < 0 ? seconds : seconds + " (" + (tick - startTick) + " ticks)";
+        }
+    }
+}
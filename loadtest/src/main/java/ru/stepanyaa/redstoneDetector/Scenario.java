@@ -0,0 +1,86 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сценарий нагрузочного прогона: мир side x side чанков, фоновая нагрузка сервера
+ * и постройки, которые в заданные секунды генерируют события редстоуна.
+ *
+ * @param baseTickMs   время тика сервера без построек
+ * @param noisePerTick события физики нередстоуновых блоков за тик (песок, вода и т.п.)
+ */
+record Scenario(String name, String description, int side, int seconds, double baseTickMs, int noisePerTick,
+                List<Scenario.Machine> machines) {
+
+    /**
+     * Постройка в одном чанке. Каждый непрошедший (отменённый или подавленный) сигнал
+     * не стоит серверу costMicros; lag - постройка должна быть обнаружена, иначе это безобидная схема,
+     * реакция на которую считается ложным срабатыванием.
+     */
+    record Machine(String name, int chunkX, int chunkZ, int components, int startSecond, int stopSecond,
+                   int physicsPerTick, int signalsPerTick, int pistonsPerTick, int costMicros, boolean lag) {
+
+        boolean activeAt(double second) {
+            return second >= startSecond && second < stopSecond;
+        }
+    }
+
+    static List<Scenario> builtIn() {
+        List<Scenario> scenarios = new ArrayList<>();
+
+        // Одна лаг-машина среди обычных часов: время обнаружения и отсутствие ложных срабатываний
+        List<Machine> single = new ArrayList<>(benignClocks(24, 20, -28, 10, 6));
+        single.add(new Machine("lag-clock", 7, -5, 180, 6, 20, 100, 120, 16, 250, true));
+        scenarios.add(new Scenario("single-machine", "one lag machine among 24 benign clocks, 4096 chunks",
+                64, 20, 20.0, 200, single));
+
+        // Одновременный запуск многих машин на большой карте с потоком событий физики
+        List<Machine> storm = new ArrayList<>(benignClocks(48, 20, -44, 11, 8));
+        for (int i = 0; i < 12; i++) {
+            storm.add(new Machine("storm-" + (i + 1), -40 + i * 7, 30 - i * 5, 150, 6 + i / 4, 20, 40, 60, 8, 70, true));
+        }
+        scenarios.add(new Scenario("storm", "12 lag machines starting within 3 s, 48 benign clocks, 9216 chunks",
+                96, 20, 25.0, 2000, storm));
+
+        // Много безобидных схем без лагов: затраты плагина в покое и ложные срабатывания
+        scenarios.add(new Scenario("benign-farms", "200 benign clocks and no lag, 4096 chunks",
+                64, 10, 30.0, 500, benignClocks(200, 10, -30, 3, 20)));
+        return scenarios;
+    }
+
+    // Часы на 3 события за тик (60 в секунду) - ниже порогов активности по умолчанию
+    private static List<Machine> benignClocks(int count, int seconds, int origin, int spacing, int perRow) {
+        List<Machine> clocks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int x = origin + (i % perRow) * spacing;
+            int z = origin + (i / perRow) * spacing;
+            clocks.add(new Machine("clock-" + (i + 1), x, z, 24, 0, seconds, 1, 2, 0, 20, false));
+        }
+        return clocks;
+    }
+}
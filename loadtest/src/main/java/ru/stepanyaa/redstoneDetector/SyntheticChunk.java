@@ -0,0 +1,198 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.block.Biome;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Arrays;
+
+/**
+ * Содержимое синтетического чанка: камень до уровня поверхности, воздух выше
+ * и редстоун-компоненты в заданных позициях. Хранится разреженно, поэтому
+ * тысячи чанков занимают мало памяти.
+ */
+final class SyntheticChunk {
+
+    static final int SURFACE_Y = 64;
+
+    private final int minHeight;
+    // Упакованные позиции (y - minHeight) << 8 | z << 4 | x по возрастанию и их материалы
+    private final int[] positions;
+    private final Material[] types;
+
+    private SyntheticChunk(int minHeight, int[] positions, Material[] types) {
+        this.minHeight = minHeight;
+        this.positions = positions;
+        this.types = types;
+    }
+
+    static SyntheticChunk empty(int minHeight) {
+        return new SyntheticChunk(minHeight, new int[0], new Material[0]);
+    }
+
+    /**
+     * Постройка из count компонентов над поверхностью, слоями 16x16 начиная с SURFACE_Y.
+     * Материалы берутся по кругу из palette.
+     */
+    static SyntheticChunk withRedstone(int minHeight, int count, Material[] palette) {
+        int[] positions = new int[count];
+        Material[] types = new Material[count];
+        for (int i = 0; i < count; i++) {
+            int x = i & 15;
+            int z = (i >> 4) & 15;
+            int y = SURFACE_Y + (i >> 8);
+            positions[i] = ChunkScanner.packPosition(x, y - minHeight, z);
+            types[i] = palette[i % palette.length];
+        }
+        return new SyntheticChunk(minHeight, positions, types);
+    }
+
+    int redstoneCount() {
+        return positions.length;
+    }
+
+    // Координаты i-го компонента: x и z внутри чанка, y мировая
+    int localX(int i) {
+        return ChunkScanner.unpackX(positions[i]);
+    }
+
+    int y(int i) {
+        return ChunkScanner.unpackRelativeY(positions[i]) + minHeight;
+    }
+
+    int localZ(int i) {
+        return ChunkScanner.unpackZ(positions[i]);
+    }
+
+    Material type(int i) {
+        return types[i];
+    }
+
+    Material getBlockType(int x, int y, int z) {
+        int index = Arrays.binarySearch(positions, ChunkScanner.packPosition(x, y - minHeight, z));
+        if (index >= 0) return types[index];
+        return y < SURFACE_Y ? Material.STONE : Material.AIR;
+    }
+
+    boolean isSectionEmpty(int section) {
+        int baseY = minHeight + (section << 4);
+        if (baseY < SURFACE_Y) return false;
+        int from = ChunkScanner.packPosition(0, baseY - minHeight, 0);
+        int index = Arrays.binarySearch(positions, from);
+        if (index < 0) index = -index - 1;
+        return index >= positions.length || positions[index] >= from + (16 << 8);
+    }
+
+    ChunkSnapshot snapshot(String world, int chunkX, int chunkZ) {
+        return new Snapshot(world, chunkX, chunkZ);
+    }
+
+    /**
+     * Снимок, который получает сканер. Методы объявлены без @Override,
+     * чтобы класс собирался с разными версиями API.
+     */
+    private final class Snapshot implements ChunkSnapshot {
+        private final String world;
+        private final int chunkX;
+        private final int chunkZ;
+
+        Snapshot(String world, int chunkX, int chunkZ) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        public int getX() {
+            return chunkX;
+        }
+
+        public int getZ() {
+            return chunkZ;
+        }
+
+        public String getWorldName() {
+            return world;
+        }
+
+        public Material getBlockType(int x, int y, int z) {
+            return SyntheticChunk.this.getBlockType(x, y, z);
+        }
+
+        public BlockData getBlockData(int x, int y, int z) {
+            throw new UnsupportedOperationException();
+        }
+
+        public int getData(int x, int y, int z) {
+            return 0;
+        }
+
+        public int getBlockSkyLight(int x, int y, int z) {
+            return y < SURFACE_Y ? 0 : 15;
+        }
+
+        public int getBlockEmittedLight(int x, int y, int z) {
+            return 0;
+        }
+
+        public int getHighestBlockYAt(int x, int z) {
+            return SURFACE_Y - 1;
+        }
+
+        public Biome getBiome(int x, int z) {
+            return Biome.PLAINS;
+        }
+
+        public Biome getBiome(int x, int y, int z) {
+            return Biome.PLAINS;
+        }
+
+        public double getRawBiomeTemperature(int x, int z) {
+            return 0.8;
+        }
+
+        public double getRawBiomeTemperature(int x, int y, int z) {
+            return 0.8;
+        }
+
+        public long getCaptureFullTime() {
+            return 0;
+        }
+
+        public boolean isSectionEmpty(int sy) {
+            return SyntheticChunk.this.isSectionEmpty(sy);
+        }
+
+        public boolean contains(BlockData block) {
+            return false;
+        }
+
+        public boolean contains(Biome biome) {
+            return biome == Biome.PLAINS;
+        }
+    }
+}
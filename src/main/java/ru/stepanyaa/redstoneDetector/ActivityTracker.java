@@ -0,0 +1,243 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Скользящие окна изменений сигнала по чанкам. Для каждого чанка хранится кольцевой буфер
+ * из {@code windowSeconds} посекундных корзин; ключом служит упакованная координата чанка.
+ * Запись события не выделяет память, таблица перестраивается только в {@link #publish}.
+ * Таблицы разбиты на полосы по хешу чанка, каждая со своей блокировкой: на Folia события
+ * приходят из потоков разных регионов и почти не конкурируют за одну полосу.
+ */
+public class ActivityTracker {
+
+    public interface RateConsumer {
+        void accept(UUID world, long chunkKey, int rate);
+    }
+
+    private static final int STRIPES = 16;
+
+    private static final class Stripe {
+        final Map<UUID, WorldActivity> worlds = new HashMap<>();
+    }
+
+    private final int windowSeconds;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public ActivityTracker(int windowSeconds) {
+        this.windowSeconds = Math.max(1, windowSeconds);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) ((key * 0xC2B2AE3D27D4EB4FL) >>> 60)];
+    }
+
+    public void record(UUID world, int chunkX, int chunkZ) {
+        long key = RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ);
+        Stripe stripe = stripe(key);
+        int now = currentSecond();
+        synchronized (stripe) {
+            WorldActivity activity = stripe.worlds.get(world);
+            if (activity == null) {
+                activity = new WorldActivity(windowSeconds);
+                stripe.worlds.put(world, activity);
+            }
+            activity.record(key, now);
+        }
+    }
+
+    public int getRate(UUID world, int chunkX, int chunkZ) {
+        long key = RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            WorldActivity activity = stripe.worlds.get(world);
+            return activity == null ? 0 : activity.rate(key, currentSecond());
+        }
+    }
+
+    /**
+     * Передаёт текущую частоту каждого отслеживаемого чанка (включая упавшую до нуля)
+     * и удаляет из таблиц чанки, простаивавшие всё окно. Полосы блокируются по очереди.
+     */
+    public void publish(RateConsumer consumer) {
+        int now = currentSecond();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<UUID, WorldActivity> entry : stripe.worlds.entrySet()) {
+                    entry.getValue().publish(entry.getKey(), now, consumer);
+                }
+                stripe.worlds.values().removeIf(activity -> activity.size == 0);
+            }
+        }
+    }
+
+    /**
+     * Передаёт чанки с ненулевой частотой, не изменяя таблицы.
+     */
+    public void forEachActive(RateConsumer consumer) {
+        int now = currentSecond();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Map.Entry<UUID, WorldActivity> entry : stripe.worlds.entrySet()) {
+                    entry.getValue().forEachActive(entry.getKey(), now, consumer);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.worlds.clear();
+            }
+        }
+    }
+
+    private static int currentSecond() {
+        return (int) (System.currentTimeMillis() / 1000L);
+    }
+
+    private static final class WorldActivity {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private final int window;
+        private long[] keys;
+        private int[] counts;
+        private int[] stamps;
+        private int size;
+
+        WorldActivity(int window) {
+            this.window = window;
+            allocate(16);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            counts = new int[capacity * window];
+            stamps = new int[capacity * window];
+            size = 0;
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int index = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while (keys[index] != EMPTY && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        void record(long key, int now) {
+            int slot = slot(key);
+            if (keys[slot] == EMPTY) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    rehash(keys.length * 2, now);
+                    slot = slot(key);
+                }
+                keys[slot] = key;
+                size++;
+            }
+            int bucket = slot * window + Math.floorMod(now, window);
+            if (stamps[bucket] != now) {
+                stamps[bucket] = now;
+                counts[bucket] = 0;
+            }
+            counts[bucket]++;
+        }
+
+        int rate(long key, int now) {
+            int slot = slot(key);
+            return keys[slot] == EMPTY ? 0 : rateAt(slot, now);
+        }
+
+        // Среднее число изменений в секунду за окно, округлённое вверх, чтобы редкие импульсы не давали ноль
+        private int rateAt(int slot, int now) {
+            int sum = 0;
+            int base = slot * window;
+            for (int i = 0; i < window; i++) {
+                if (now - stamps[base + i] < window) {
+                    sum += counts[base + i];
+                }
+            }
+            return (sum + window - 1) / window;
+        }
+
+        void publish(UUID world, int now, RateConsumer consumer) {
+            int idle = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == EMPTY) continue;
+                int rate = rateAt(slot, now);
+                consumer.accept(world, keys[slot], rate);
+                if (rate == 0) idle++;
+            }
+            if (idle > 0) {
+                rehash(keys.length, now);
+            }
+        }
+
+        void forEachActive(UUID world, int now, RateConsumer consumer) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == EMPTY) continue;
+                int rate = rateAt(slot, now);
+                if (rate > 0) consumer.accept(world, keys[slot], rate);
+            }
+        }
+
+        // Перестраивает таблицу, отбрасывая чанки без событий в пределах окна
+        private void rehash(int capacity, int now) {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            int[] oldStamps = stamps;
+            allocate(capacity);
+            for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+                long key = oldKeys[oldSlot];
+                if (key == EMPTY) continue;
+
+                int oldBase = oldSlot * window;
+                boolean active = false;
+                for (int i = 0; i < window; i++) {
+                    if (now - oldStamps[oldBase + i] < window && oldCounts[oldBase + i] > 0) {
+                        active = true;
+                        break;
+                    }
+                }
+                if (!active) continue;
+
+                int slot = slot(key);
+                keys[slot] = key;
+                size++;
+                System.arraycopy(oldCounts, oldBase, counts, slot * window, window);
+                System.arraycopy(oldStamps, oldBase, stamps, slot * window, window);
+            }
+        }
+    }
+}
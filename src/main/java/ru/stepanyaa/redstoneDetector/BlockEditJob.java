@@ -0,0 +1,316 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Удаление или восстановление редстоуна в чанке, распределённое по тикам.
+ * Блоки меняются без физики. Когда все блоки изменены, неизменённые соседи получают
+ * обновление: по секциям изменённые блоки, граничащие с ними, повторно ставятся с физикой,
+ * причём каждый сосед обновляется один раз. При удалении блок попадает в копию в том же шаге,
+ * в котором убирается, поэтому копия содержит только удалённые блоки.
+ */
+public class BlockEditJob {
+
+    public enum Type { REMOVE, RESTORE }
+
+    // Запись изменена без физики / поставлена с физикой (контейнер при восстановлении)
+    private static final byte CHANGED = 1;
+    private static final byte NOTIFIED = 2;
+    private static final int[][] FACES = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+
+    private final RedstoneDetector plugin;
+    private final Type type;
+    private final RedstoneDetector.ChunkCoordinate coord;
+    private final UUID initiator;
+    private final int minHeight;
+    private final int height;
+    private final int[] positions;
+    private final RedstoneBackupStore.Backup backup;
+    private final Map<String, BlockData> parsed = new HashMap<>();
+
+    private final byte[] changes;
+    // Восстановленные записи копии; остальные остаются в ней
+    private final boolean[] restored;
+    // Записи, повторно ставящиеся с физикой, по секциям; null - ещё не собраны
+    private int[] notifiers;
+    private int next = 0;
+    private int notified = 0;
+    private int changed = 0;
+
+    private BlockEditJob(RedstoneDetector plugin, Type type, RedstoneDetector.ChunkCoordinate coord, Player initiator,
+                         int minHeight, int maxHeight, int[] positions, RedstoneBackupStore.Backup backup) {
+        this.plugin = plugin;
+        this.type = type;
+        this.coord = coord;
+        this.initiator = initiator == null ? null : initiator.getUniqueId();
+        this.minHeight = minHeight;
+        this.height = maxHeight - minHeight;
+        this.positions = positions;
+        this.backup = backup;
+        this.changes = new byte[positions.length];
+        this.restored = type == Type.RESTORE ? new boolean[positions.length] : null;
+    }
+
+    public static BlockEditJob remove(RedstoneDetector plugin, RedstoneDetector.ChunkCoordinate coord, Player initiator,
+                                      World world, int[] positions) {
+        int minHeight = world.getMinHeight();
+        return new BlockEditJob(plugin, Type.REMOVE, coord, initiator, minHeight, world.getMaxHeight(), positions,
+                new RedstoneBackupStore.Backup(minHeight));
+    }
+
+    public static BlockEditJob restore(RedstoneDetector plugin, RedstoneDetector.ChunkCoordinate coord, Player initiator,
+                                       World world, RedstoneBackupStore.Backup backup) {
+        int[] positions = new int[backup.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = backup.position(i);
+        }
+        return new BlockEditJob(plugin, Type.RESTORE, coord, initiator, backup.minHeight,
+                Math.max(world.getMaxHeight(), backup.minHeight + 16), positions, backup);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getProgress() {
+        return positions.length == 0 ? 100 : (int) (next * 100L / positions.length);
+    }
+
+    /**
+     * Меняет блоки, затем обновляет соседей до наступления deadline (System.nanoTime).
+     *
+     * @return true, когда задание завершено
+     */
+    public boolean process(long deadline) {
+        World world = plugin.getServer().getWorld(coord.world());
+        if (world == null || !world.isChunkLoaded(coord.x(), coord.z())) {
+            // Чанк выгружен: сохраняем то, что успели сделать
+            finish(next >= positions.length);
+            return true;
+        }
+
+        Chunk chunk = world.getChunkAt(coord.x(), coord.z());
+        while (next < positions.length && System.nanoTime() < deadline) {
+            apply(chunk, next++);
+        }
+        if (next < positions.length) return false;
+
+        if (notifiers == null) notifiers = collectNotifiers();
+        while (notified < notifiers.length && System.nanoTime() < deadline) {
+            notifyNeighbours(chunk, notifiers[notified++]);
+        }
+        if (notified < notifiers.length) return false;
+
+        finish(true);
+        return true;
+    }
+
+    private Block block(Chunk chunk, int index) {
+        int packed = positions[index];
+        return chunk.getBlock(ChunkScanner.unpackX(packed), ChunkScanner.unpackRelativeY(packed) + minHeight, ChunkScanner.unpackZ(packed));
+    }
+
+    private void apply(Chunk chunk, int index) {
+        if (type == Type.REMOVE) {
+            Block block = block(chunk, index);
+            if (plugin.isRedstoneComponent(block.getType()) && capture(block, index, block.getBlockData().getAsString())) {
+                block.setType(Material.AIR, false);
+                changes[index] = CHANGED;
+                changed++;
+            }
+        } else {
+            restore(chunk, index);
+        }
+    }
+
+    // Записывает блок в копию и убирает содержимое контейнера, чтобы оно не выпало при удалении
+    private boolean capture(Block block, int index, String blockData) {
+        BlockState state = block.getState();
+        Inventory inventory = state instanceof Container container ? container.getInventory() : null;
+        try {
+            backup.add(positions[index], blockData, inventory == null ? null : inventory.getContents());
+        } catch (IOException e) {
+            // Блок без резервной копии не удаляем
+            plugin.getLogger().warning(plugin.getMessage("chunk.backup_failed", "Could not back up block at {location}: ")
+                    .replace("{location}", block.getX() + ", " + block.getY() + ", " + block.getZ()) + e.getMessage());
+            return false;
+        }
+        if (inventory != null) inventory.clear();
+        return true;
+    }
+
+    private void restore(Chunk chunk, int index) {
+        Block block = block(chunk, index);
+        if (!block.isEmpty()) return;
+
+        BlockData data;
+        try {
+            data = parsed.computeIfAbsent(backup.blockData(index), Bukkit::createBlockData);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        ItemStack[] items = null;
+        try {
+            items = backup.contents(index);
+        } catch (IOException e) {
+            plugin.getLogger().warning(plugin.getMessage("chunk.backup_load_failed", "Could not read redstone backup for chunk {coord}: ")
+                    .replace("{coord}", coord.toDisplayString()) + e.getMessage());
+        }
+        // Контейнер нельзя поставить повторно без потери содержимого, поэтому он сразу ставится с физикой
+        boolean container = items != null;
+        block.setBlockData(data, container);
+        if (container && block.getState() instanceof Container state) {
+            state.getInventory().setContents(items);
+        }
+        restored[index] = true;
+        changes[index] = container ? NOTIFIED : CHANGED;
+        changed++;
+    }
+
+    /**
+     * Выбирает изменённые блоки, повторная установка которых с физикой обновит каждого
+     * неизменённого соседа (в том числе за границей чанка) ровно один раз. Блоки идут по секциям снизу вверх.
+     */
+    private int[] collectNotifiers() {
+        LongHashSet changedKeys = new LongHashSet(Math.max(16, changed));
+        int[] perSection = new int[(height >> 4) + 2];
+        for (int i = 0; i < positions.length; i++) {
+            if (changes[i] == 0) continue;
+            int packed = positions[i];
+            changedKeys.add(key(ChunkScanner.unpackX(packed), ChunkScanner.unpackRelativeY(packed), ChunkScanner.unpackZ(packed)));
+            perSection[(ChunkScanner.unpackRelativeY(packed) >> 4) + 1]++;
+        }
+        // Сортировка подсчётом по секциям
+        for (int section = 1; section < perSection.length; section++) {
+            perSection[section] += perSection[section - 1];
+        }
+        int[] order = new int[changed];
+        for (int i = 0; i < positions.length; i++) {
+            if (changes[i] != 0) order[perSection[ChunkScanner.unpackRelativeY(positions[i]) >> 4]++] = i;
+        }
+
+        // Соседи контейнеров уже получили обновление при их установке
+        LongHashSet covered = new LongHashSet();
+        for (int index : order) {
+            if (changes[index] == NOTIFIED) cover(index, changedKeys, covered);
+        }
+        int[] result = new int[order.length];
+        int count = 0;
+        for (int index : order) {
+            if (changes[index] == CHANGED && cover(index, changedKeys, covered)) result[count++] = index;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Отмечает неизменённых соседей блока; true, если среди них были ещё не отмеченные
+    private boolean cover(int index, LongHashSet changedKeys, LongHashSet covered) {
+        int packed = positions[index];
+        int x = ChunkScanner.unpackX(packed);
+        int y = ChunkScanner.unpackRelativeY(packed);
+        int z = ChunkScanner.unpackZ(packed);
+        boolean added = false;
+        for (int[] face : FACES) {
+            int ny = y + face[1];
+            if (ny < 0 || ny >= height) continue;
+            long neighbour = key(x + face[0], ny, z + face[2]);
+            if (!changedKeys.contains(neighbour) && covered.add(neighbour)) added = true;
+        }
+        return added;
+    }
+
+    // x и z от -1 до 16: соседи за границей чанка тоже учитываются
+    private static long key(int x, int relativeY, int z) {
+        return (long) relativeY << 16 | (x + 1) << 8 | (z + 1);
+    }
+
+    // Повторная установка с физикой: соседи получают те же обновления, что и при обычной установке или удалении
+    private void notifyNeighbours(Chunk chunk, int index) {
+        Block block = block(chunk, index);
+        if (type == Type.REMOVE) {
+            // Место уже занято игроком - соседи обновились при его установке
+            if (!block.isEmpty()) return;
+            block.setType(Material.STONE, false);
+            block.setType(Material.AIR, true);
+        } else {
+            BlockData data = parsed.get(backup.blockData(index));
+            if (data == null || !data.equals(block.getBlockData())) return;
+            block.setType(Material.AIR, false);
+            block.setBlockData(data, true);
+        }
+    }
+
+    private void finish(boolean complete) {
+        if (type == Type.REMOVE) {
+            plugin.onRedstoneRemoved(coord, backup, changed, complete);
+            if (complete) {
+                send(ChatColor.GREEN + plugin.getMessage("chunk.redstone_removed", "Redstone removed in chunk {coord}").replace("{coord}", coord.toDisplayString()));
+            } else {
+                send(ChatColor.YELLOW + partial("chunk.redstone_removed_partial", "Redstone partially removed in chunk {coord}: {count} of {total} blocks (the chunk was unloaded)"));
+            }
+        } else {
+            RedstoneBackupStore.Backup remaining = backup.without(restored);
+            plugin.onRedstoneRestored(coord, remaining);
+            if (remaining.size() == 0) {
+                send(ChatColor.GREEN + plugin.getMessage("chunk.redstone_restored", "Redstone restored in chunk {coord}").replace("{coord}", coord.toDisplayString()));
+            } else {
+                send(ChatColor.YELLOW + partial("chunk.redstone_restored_partial", "Redstone partially restored in chunk {coord}: {count} of {total} blocks, the rest is kept in the backup"));
+            }
+        }
+    }
+
+    private String partial(String key, String def) {
+        return plugin.getMessage(key, def)
+                .replace("{coord}", coord.toDisplayString())
+                .replace("{count}", String.valueOf(changed))
+                .replace("{total}", String.valueOf(positions.length));
+    }
+
+    private void send(String message) {
+        if (initiator == null) return;
+        Player player = Bukkit.getPlayer(initiator);
+        if (player != null && player.isOnline()) {
+            player.sendMessage(message);
+        }
+    }
+}
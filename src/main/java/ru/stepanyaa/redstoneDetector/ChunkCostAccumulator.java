@@ -0,0 +1,80 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Неблокирующий накопитель времени по упакованным ключам чанков фиксированной ёмкости.
+ * Ключи занимаются через CAS и не удаляются; накопитель заменяется целиком при публикации.
+ * Если таблица заполнена, новые чанки отбрасываются.
+ */
+public class ChunkCostAccumulator {
+
+    public interface Visitor {
+        void visit(long key, long nanos);
+    }
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final AtomicLongArray keys;
+    private final AtomicLongArray values;
+    private final int mask;
+
+    public ChunkCostAccumulator(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        keys = new AtomicLongArray(size);
+        values = new AtomicLongArray(size);
+        mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            keys.set(i, EMPTY);
+        }
+    }
+
+    public boolean add(long key, long nanos) {
+        int index = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        for (int probe = 0; probe <= mask; probe++) {
+            long current = keys.get(index);
+            if (current == EMPTY && (keys.compareAndSet(index, EMPTY, key) || keys.get(index) == key)) {
+                current = key;
+            }
+            if (current == key) {
+                values.addAndGet(index, nanos);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i <= mask; i++) {
+            long key = keys.get(i);
+            if (key != EMPTY) {
+                visitor.visit(key, values.get(i));
+            }
+        }
+    }
+}
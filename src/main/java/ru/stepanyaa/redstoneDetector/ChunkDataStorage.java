@@ -0,0 +1,471 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичное хранилище данных о чанках: по файлу chunk-data/&lt;мир&gt;.bin на мир.
+ * Файл состоит из заголовка и записей фиксированной длины, поэтому изменённый
+ * чанк перезаписывается на своём месте, новый дописывается в свободную запись или в конец,
+ * а удалённый помечается пустым и его запись используется повторно.
+ * <p>
+ * Сохранение делится на снимок изменённых записей в главном потоке и запись на диск
+ * в отдельном потоке. Изменённые записи сначала целиком пишутся в журнал &lt;мир&gt;.journal
+ * с контрольной суммой, и только после его сброса на диск переносятся в основной файл.
+ * Если запись прервалась, журнал повторно применяется при следующем открытии файла,
+ * а неполный журнал отбрасывается: основной файл к тому моменту ещё не тронут.
+ * Все операции с файлами и их раскладкой выполняются в одном потоке ввода-вывода.
+ */
+public class ChunkDataStorage {
+
+    static final int MAGIC = 0x52444344; // "RDCD"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 40;
+
+    // Смещения полей внутри записи
+    private static final int OFFSET_KEY = 0;
+    private static final int OFFSET_REDSTONE = 8;
+    private static final int OFFSET_ENTITIES = 12;
+    private static final int OFFSET_FIRST_DETECTED = 16;
+    private static final int OFFSET_LAST_SCANNED = 20;
+    private static final int OFFSET_LAST_MODIFIED = 24;
+    private static final int OFFSET_CLEARED_TIME = 28;
+    private static final int OFFSET_STATE = 32;
+    private static final int OFFSET_FLAGS = 33;
+    private static final int MIN_RECORD_SIZE = 34;
+
+    private static final byte STATE_FREE = 0;
+    private static final byte STATE_LIVE = 1;
+    private static final byte FLAG_CLEARED = 1;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // Журнал: magic, число записей, затем (номер записи, RECORD_SIZE байт) и CRC32 всего предыдущего
+    static final int JOURNAL_MAGIC = 0x52444A4C; // "RDJL"
+    private static final int JOURNAL_HEADER_SIZE = 8;
+    private static final int JOURNAL_ENTRY_SIZE = 4 + RECORD_SIZE;
+
+    // Расположение записей одного файла
+    private static final class WorldFile {
+        final File file;
+        final LongIntHashMap records = new LongIntHashMap(-1);
+        long[] recordKeys = new long[64];
+        int recordCount;
+        int[] free = new int[16];
+        int freeCount;
+
+        WorldFile(File file) {
+            this.file = file;
+            Arrays.fill(recordKeys, EMPTY);
+        }
+
+        int allocate(long key) {
+            int record;
+            if (freeCount > 0) {
+                record = free[--freeCount];
+            } else {
+                record = recordCount++;
+                ensureCapacity(record);
+            }
+            bind(record, key);
+            return record;
+        }
+
+        void bind(int record, long key) {
+            recordKeys[record] = key;
+            records.put(key, record);
+        }
+
+        void release(int record) {
+            records.remove(recordKeys[record]);
+            recordKeys[record] = EMPTY;
+            addFree(record);
+        }
+
+        void addFree(int record) {
+            if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+            free[freeCount++] = record;
+        }
+
+        void ensureCapacity(int record) {
+            if (record < recordKeys.length) return;
+            int oldLength = recordKeys.length;
+            recordKeys = Arrays.copyOf(recordKeys, Math.max(oldLength * 2, record + 1));
+            Arrays.fill(recordKeys, oldLength, recordKeys.length, EMPTY);
+        }
+    }
+
+    /**
+     * Изменённые записи одного мира на момент снимка.
+     */
+    public static final class Snapshot {
+        final String world;
+        final ChunkIndex index;
+        long[] keys = new long[64];
+        ByteBuffer records = ByteBuffer.allocate(64 * RECORD_SIZE);
+        int count;
+        long[] removed;
+
+        Snapshot(String world, ChunkIndex index) {
+            this.world = world;
+            this.index = index;
+        }
+
+        void add(long key, RedstoneDetector.ChunkData data) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                ByteBuffer grown = ByteBuffer.allocate(keys.length * RECORD_SIZE);
+                records.flip();
+                grown.put(records);
+                records = grown;
+            }
+            keys[count++] = key;
+            writeRecord(records, key, data);
+        }
+
+        public int size() {
+            return count + removed.length;
+        }
+    }
+
+    private final File directory;
+    private final Logger logger;
+    // Раскладка файлов читается и меняется только в потоке ввода-вывода
+    private final Map<String, WorldFile> files = new HashMap<>();
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RedstoneDetector-IO");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChunkDataStorage(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    private File worldFile(String world) {
+        return new File(directory, world + ".bin");
+    }
+
+    private static File journalFile(WorldFile worldFile) {
+        String path = worldFile.file.getPath();
+        return new File(path.substring(0, path.length() - ".bin".length()) + ".journal");
+    }
+
+    /**
+     * Загружает файл мира в индекс в потоке ввода-вывода. Записи старше retention и очищенные
+     * администратором раньше чем clearedHold назад в индекс не попадают и освобождаются
+     * при следующем сохранении.
+     */
+    public CompletableFuture<Integer> load(String world, ChunkIndex index, long now, long retention, long clearedHold) {
+        return CompletableFuture.supplyAsync(() -> {
+            WorldFile worldFile = new WorldFile(worldFile(world));
+            files.put(world, worldFile);
+            try {
+                return read(worldFile, index, now, retention, clearedHold);
+            } catch (IOException e) {
+                files.remove(world);
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+    }
+
+    // Читает файл; без индекса восстанавливает только раскладку записей
+    private int read(WorldFile worldFile, ChunkIndex index, long now, long retention, long clearedHold) throws IOException {
+        replayJournal(worldFile);
+        if (!worldFile.file.exists()) return 0;
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(worldFile.file.toPath(), StandardOpenOption.READ)) {
+            // Читаем файл целиком одним вызовом: записи маленькие, а отображение в память
+            // держит файл открытым до сборки мусора
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // читаем до конца файла
+            }
+            buffer.flip();
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            quarantine(worldFile, "bad header");
+            return 0;
+        }
+        short version = buffer.getShort(4);
+        int recordSize = buffer.getShort(6) & 0xFFFF;
+        if (version > VERSION || recordSize != RECORD_SIZE) {
+            quarantine(worldFile, "unsupported version " + version);
+            return 0;
+        }
+
+        int total = (buffer.limit() - HEADER_SIZE) / RECORD_SIZE;
+        int loaded = 0;
+        for (int record = 0; record < total; record++) {
+            int offset = HEADER_SIZE + record * RECORD_SIZE;
+            worldFile.ensureCapacity(record);
+            worldFile.recordCount = record + 1;
+
+            long key = buffer.getLong(offset + OFFSET_KEY);
+            // Дубликат после сбоя оставляет первую запись, вторая считается свободной
+            if (buffer.get(offset + OFFSET_STATE) != STATE_LIVE || worldFile.records.containsKey(key)) {
+                worldFile.addFree(record);
+                continue;
+            }
+            worldFile.bind(record, key);
+            if (index == null) continue;
+
+            RedstoneDetector.ChunkData data = new RedstoneDetector.ChunkData();
+            data.redstoneCount = buffer.getInt(offset + OFFSET_REDSTONE);
+            data.entityCount = buffer.getInt(offset + OFFSET_ENTITIES);
+            data.firstDetected = ChunkIndex.fromStamp(buffer.getInt(offset + OFFSET_FIRST_DETECTED));
+            data.lastScanned = ChunkIndex.fromStamp(buffer.getInt(offset + OFFSET_LAST_SCANNED));
+            data.lastModified = ChunkIndex.fromStamp(buffer.getInt(offset + OFFSET_LAST_MODIFIED));
+            data.clearedTime = ChunkIndex.fromStamp(buffer.getInt(offset + OFFSET_CLEARED_TIME));
+            data.clearedByAdmin = (buffer.get(offset + OFFSET_FLAGS) & FLAG_CLEARED) != 0;
+
+            // Очищенный чанк остаётся очищенным и после перезапуска, пока не истечёт clearedHold
+            if (data.clearedByAdmin ? now - data.clearedTime > clearedHold : now - data.lastScanned > retention) {
+                index.markRemoved(key);
+                continue;
+            }
+            index.putLoaded(key, data);
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Снимает изменённые с прошлого сохранения записи индекса. Вызывается в главном потоке;
+     * возвращает null, если сохранять нечего.
+     */
+    public Snapshot snapshot(String world, ChunkIndex index) {
+        if (!index.isDirty()) return null;
+
+        Snapshot snapshot = new Snapshot(world, index);
+        snapshot.removed = index.drainDirty(snapshot::add);
+        return snapshot.size() > 0 ? snapshot : null;
+    }
+
+    /**
+     * Записывает снимки в потоке записи. Результат - число записанных и удалённых записей;
+     * при ошибке изменения снова помечаются для следующего сохранения.
+     */
+    public CompletableFuture<Integer> write(List<Snapshot> snapshots) {
+        return CompletableFuture.supplyAsync(() -> {
+            int written = 0;
+            IOException failure = null;
+            for (Snapshot snapshot : snapshots) {
+                try {
+                    apply(snapshot);
+                    written += snapshot.size();
+                } catch (IOException e) {
+                    // Раскладка могла измениться до сбоя; перечитаем её из файла
+                    files.remove(snapshot.world);
+                    snapshot.index.restoreDirty(Arrays.copyOf(snapshot.keys, snapshot.count), snapshot.removed);
+                    if (failure == null) failure = e;
+                }
+            }
+            if (failure != null) throw new CompletionException(failure);
+            return written;
+        }, ioExecutor);
+    }
+
+    private void apply(Snapshot snapshot) throws IOException {
+        WorldFile worldFile = files.get(snapshot.world);
+        if (worldFile == null) {
+            worldFile = new WorldFile(worldFile(snapshot.world));
+            read(worldFile, null, 0, 0, 0);
+            files.put(snapshot.world, worldFile);
+        }
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        // Удалённые чанки освобождают свои записи до размещения новых
+        int[] positions = new int[snapshot.removed.length + snapshot.count];
+        ByteBuffer journal = ByteBuffer.allocate(JOURNAL_HEADER_SIZE + positions.length * JOURNAL_ENTRY_SIZE + 4);
+        journal.putInt(JOURNAL_MAGIC).putInt(0);
+        int entries = 0;
+        for (long key : snapshot.removed) {
+            int record = worldFile.records.get(key);
+            if (record < 0) continue;
+            journal.putInt(record);
+            int start = journal.position();
+            journal.put(start + OFFSET_STATE, STATE_FREE);
+            journal.position(start + RECORD_SIZE);
+            positions[entries++] = record;
+            worldFile.release(record);
+        }
+        ByteBuffer records = snapshot.records;
+        for (int i = 0; i < snapshot.count; i++) {
+            long key = snapshot.keys[i];
+            int record = worldFile.records.get(key);
+            if (record < 0) record = worldFile.allocate(key);
+            journal.putInt(record);
+            records.limit((i + 1) * RECORD_SIZE).position(i * RECORD_SIZE);
+            journal.put(records);
+            positions[entries++] = record;
+        }
+        if (entries == 0) return;
+        journal.putInt(4, entries);
+        CRC32 crc = new CRC32();
+        crc.update(journal.array(), 0, journal.position());
+        journal.putInt((int) crc.getValue());
+        journal.flip();
+
+        File journalFile = journalFile(worldFile);
+        try (FileChannel channel = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, journal, 0);
+            channel.force(true);
+        }
+        applyJournal(worldFile, journal, entries);
+        Files.delete(journalFile.toPath());
+    }
+
+    // Переносит записи журнала в основной файл на их места
+    private static void applyJournal(WorldFile worldFile, ByteBuffer journal, int entries) throws IOException {
+        try (FileChannel channel = FileChannel.open(worldFile.file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                writeFully(channel, header(), 0);
+            }
+            for (int i = 0; i < entries; i++) {
+                int offset = JOURNAL_HEADER_SIZE + i * JOURNAL_ENTRY_SIZE;
+                journal.clear();
+                int record = journal.getInt(offset);
+                journal.limit(offset + JOURNAL_ENTRY_SIZE).position(offset + 4);
+                writeFully(channel, journal, HEADER_SIZE + (long) record * RECORD_SIZE);
+            }
+            channel.force(true);
+        }
+    }
+
+    // Журнал, оставшийся после сбоя: целый применяется повторно, неполный отбрасывается
+    private void replayJournal(WorldFile worldFile) throws IOException {
+        File journalFile = journalFile(worldFile);
+        if (!journalFile.exists()) return;
+
+        byte[] bytes = Files.readAllBytes(journalFile.toPath());
+        ByteBuffer journal = ByteBuffer.wrap(bytes);
+        int entries = bytes.length >= JOURNAL_HEADER_SIZE ? journal.getInt(4) : -1;
+        boolean valid = entries >= 0 && journal.getInt(0) == JOURNAL_MAGIC
+                && bytes.length == JOURNAL_HEADER_SIZE + (long) entries * JOURNAL_ENTRY_SIZE + 4;
+        if (valid) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            valid = journal.getInt(bytes.length - 4) == (int) crc.getValue();
+        }
+        if (valid) {
+            applyJournal(worldFile, journal, entries);
+            logger.info("Recovered " + entries + " chunk records of " + worldFile.file.getName() + " from an interrupted save");
+        } else {
+            logger.warning("Discarded an incomplete chunk data journal for " + worldFile.file.getName());
+        }
+        Files.delete(journalFile.toPath());
+    }
+
+    /**
+     * Удаляет из индексов чанки, не сканировавшиеся дольше retention, и очищенные администратором
+     * чанки старше clearedHold. Выполняется в потоке ввода-вывода; удаления попадают в файл
+     * при следующем сохранении.
+     */
+    public CompletableFuture<Integer> prune(List<ChunkIndex> indexes, long now, long retention, long clearedHold) {
+        return CompletableFuture.supplyAsync(() -> {
+            int pruned = 0;
+            for (ChunkIndex index : indexes) {
+                pruned += index.pruneExpired(now - retention, now - clearedHold);
+            }
+            return pruned;
+        }, ioExecutor);
+    }
+
+    /**
+     * Дожидается завершения уже запущенных записей.
+     */
+    public void shutdown() {
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warning("Chunk data writer did not finish in 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE);
+        header.position(HEADER_SIZE).flip();
+        return header;
+    }
+
+    static void writeRecord(ByteBuffer buffer, long key, RedstoneDetector.ChunkData data) {
+        int start = buffer.position();
+        buffer.putLong(key)
+                .putInt(data.redstoneCount)
+                .putInt(data.entityCount)
+                .putInt(ChunkIndex.toStamp(data.firstDetected))
+                .putInt(ChunkIndex.toStamp(data.lastScanned))
+                .putInt(ChunkIndex.toStamp(data.lastModified))
+                .putInt(ChunkIndex.toStamp(data.clearedTime))
+                .put(STATE_LIVE)
+                .put(data.clearedByAdmin ? FLAG_CLEARED : 0);
+        // Оставшиеся байты записи зарезервированы
+        buffer.position(start + RECORD_SIZE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void quarantine(WorldFile worldFile, String reason) throws IOException {
+        File broken = new File(worldFile.file.getPath() + ".corrupt");
+        Files.move(worldFile.file.toPath(), broken.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        logger.warning("Chunk data file " + worldFile.file.getName() + " is unreadable (" + reason + "), moved to " + broken.getName());
+    }
+}
@@ -0,0 +1,678 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Данные о чанках одного мира: открытая адресация по упакованному ключу (x, z)
+ * и раскладка значений по отдельным примитивным массивам. Время хранится в секундах
+ * от 2020-01-01 в int. Записи выполняются под блокировкой, чтения из асинхронных
+ * потоков используют оптимистичное чтение {@link StampedLock}.
+ */
+public class ChunkIndex {
+
+    public interface Visitor {
+        void visit(long key, RedstoneDetector.ChunkData data);
+    }
+
+    // Страница списка чанков, превышающих пороги; page уже ограничена допустимым диапазоном
+    public record FlaggedPage(int total, int page, long[] keys, RedstoneDetector.ChunkData[] data) {
+    }
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long EPOCH_BASE = 1577836800000L;
+    private static final byte FLAG_CLEARED = 1;
+    private static final byte FLAG_DIRTY = 2;
+    private static final int PRUNE_SLICE = 4096;
+    // Чанки, не сканировавшиеся дольше этого срока, не показываются в списке GUI
+    static final long FLAGGED_RETENTION = 24 * 3600000L;
+
+    // Все столбцы заменяются одной ссылкой при перестройке, чтобы оптимистичное чтение видело согласованные массивы
+    private static final class Table {
+        final long[] keys;
+        final int[] redstone;
+        final int[] entities;
+        final int[] activity;
+        final int[] tickCost;
+        final int[] firstDetected;
+        final int[] lastScanned;
+        final int[] lastModified;
+        final int[] clearedTime;
+        final byte[] flags;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            redstone = new int[capacity];
+            entities = new int[capacity];
+            activity = new int[capacity];
+            tickCost = new int[capacity];
+            firstDetected = new int[capacity];
+            lastScanned = new int[capacity];
+            lastModified = new int[capacity];
+            clearedTime = new int[capacity];
+            flags = new byte[capacity];
+        }
+
+        void copy(int from, Table target, int to) {
+            target.keys[to] = keys[from];
+            target.redstone[to] = redstone[from];
+            target.entities[to] = entities[from];
+            target.activity[to] = activity[from];
+            target.tickCost[to] = tickCost[from];
+            target.firstDetected[to] = firstDetected[from];
+            target.lastScanned[to] = lastScanned[from];
+            target.lastModified[to] = lastModified[from];
+            target.clearedTime[to] = clearedTime[from];
+            target.flags[to] = flags[from];
+        }
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            int index = hash(key, mask);
+            long current;
+            while ((current = keys[index]) != EMPTY) {
+                if (current == key) return index;
+                index = (index + 1) & mask;
+            }
+            return -1 - index;
+        }
+
+        RedstoneDetector.ChunkData read(int slot) {
+            RedstoneDetector.ChunkData data = new RedstoneDetector.ChunkData();
+            data.redstoneCount = redstone[slot];
+            data.entityCount = entities[slot];
+            data.activityRate = activity[slot];
+            data.tickCostMicros = tickCost[slot];
+            data.firstDetected = fromStamp(firstDetected[slot]);
+            data.lastScanned = fromStamp(lastScanned[slot]);
+            data.lastModified = fromStamp(lastModified[slot]);
+            data.clearedByAdmin = (flags[slot] & FLAG_CLEARED) != 0;
+            data.clearedTime = fromStamp(clearedTime[slot]);
+            return data;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private volatile Table table = new Table(64);
+    private int size;
+    // Изменения с последнего сохранения: ключи записей, получивших FLAG_DIRTY, и удалённые ключи.
+    // Список может содержать ключи, удалённые после отметки; они пропускаются при снятии
+    private long[] dirtyKeys = new long[64];
+    private int dirtyCount;
+    private final LongHashSet removed = new LongHashSet();
+    // Отсортированные чанки, превышающие пороги; не ведётся, пока правило не задано
+    private final FlaggedChunks flagged = new FlaggedChunks();
+    private FlaggedChunks.Rule rule;
+
+    private static int hash(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    static int toStamp(long millis) {
+        return millis <= 0 ? 0 : (int) ((millis - EPOCH_BASE) / 1000L);
+    }
+
+    static long fromStamp(int stamp) {
+        return stamp == 0 ? 0 : EPOCH_BASE + stamp * 1000L;
+    }
+
+    /**
+     * Возвращает копию данных чанка или null. Безопасно вызывать из любого потока.
+     */
+    public RedstoneDetector.ChunkData get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Table current = table;
+            int slot = current.find(key);
+            RedstoneDetector.ChunkData data = slot < 0 ? null : current.read(slot);
+            if (lock.validate(stamp)) return data;
+        }
+        // Была конкурентная запись; повторяем под блокировкой чтения
+        stamp = lock.readLock();
+        try {
+            int slot = table.find(key);
+            return slot < 0 ? null : table.read(slot);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean contains(long key) {
+        long stamp = lock.tryOptimisticRead();
+        boolean found = table.find(key) >= 0;
+        if (lock.validate(stamp)) return found;
+
+        stamp = lock.readLock();
+        try {
+            return table.find(key) >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Время последнего сканирования в миллисекундах, 0 для очищенных администратором чанков
+     * и -1, если данных о чанке нет.
+     */
+    public long lastScanned(long key) {
+        long stamp = lock.readLock();
+        try {
+            int slot = table.find(key);
+            if (slot < 0) return -1;
+            return (table.flags[slot] & FLAG_CLEARED) != 0 ? 0 : fromStamp(table.lastScanned[slot]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int insert(Table current, int slot, long key, long now) {
+        int index = -1 - slot;
+        current.keys[index] = key;
+        current.redstone[index] = 0;
+        current.entities[index] = 0;
+        current.activity[index] = 0;
+        current.tickCost[index] = 0;
+        current.firstDetected[index] = toStamp(now);
+        current.lastScanned[index] = toStamp(now);
+        current.lastModified[index] = 0;
+        current.clearedTime[index] = 0;
+        current.flags[index] = 0;
+        removed.remove(key);
+        if (++size * 4 > current.keys.length * 3) {
+            rehash(current.keys.length << 1);
+            return table.find(key);
+        }
+        return index;
+    }
+
+    private void markDirty(Table current, int slot) {
+        if ((current.flags[slot] & FLAG_DIRTY) == 0) {
+            current.flags[slot] |= FLAG_DIRTY;
+            if (dirtyCount == dirtyKeys.length) dirtyKeys = Arrays.copyOf(dirtyKeys, dirtyCount * 2);
+            dirtyKeys[dirtyCount++] = current.keys[slot];
+        }
+    }
+
+    public void applyScan(long key, int redstoneCount, int entityCount, long now) {
+        long stamp = lock.writeLock();
+        try {
+            applyScanLocked(key, redstoneCount, entityCount, now);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Применяет пачку результатов сканирования под одной блокировкой записи.
+     */
+    public void applyScans(long[] keys, int[] redstoneCounts, int[] entityCounts, int count, long now) {
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                applyScanLocked(keys[i], redstoneCounts[i], entityCounts[i], now);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void applyScanLocked(long key, int redstoneCount, int entityCount, long now) {
+        Table current = table;
+        int slot = current.find(key);
+        if (slot < 0) {
+            slot = insert(current, slot, key, now);
+            current = table;
+        } else if ((current.flags[slot] & FLAG_CLEARED) != 0) {
+            return;
+        }
+        current.redstone[slot] = redstoneCount;
+        current.entities[slot] = entityCount;
+        current.lastScanned[slot] = toStamp(now);
+        markDirty(current, slot);
+        refreshFlagged(current, slot);
+    }
+
+    public boolean adjustRedstone(long key, int delta, long now) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int slot = current.find(key);
+            if (slot < 0 || (current.flags[slot] & FLAG_CLEARED) != 0) return false;
+
+            current.redstone[slot] = Math.max(0, current.redstone[slot] + delta);
+            current.lastModified[slot] = toStamp(now);
+            markDirty(current, slot);
+            refreshFlagged(current, slot);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setEntities(long key, int entityCount) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.find(key);
+            if (slot >= 0 && (table.flags[slot] & FLAG_CLEARED) == 0 && table.entities[slot] != entityCount) {
+                table.entities[slot] = entityCount;
+                markDirty(table, slot);
+                refreshFlagged(table, slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setActivity(long key, int rate) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.find(key);
+            if (slot >= 0 && table.activity[slot] != rate) {
+                table.activity[slot] = rate;
+                refreshFlagged(table, slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Стоимость обработки событий чанка за тик в микросекундах; как и активность, не сохраняется на диск
+    public void setTickCost(long key, int micros) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.find(key);
+            if (slot >= 0) {
+                table.tickCost[slot] = micros;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean markCleared(long key, long now) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = table.find(key);
+            if (slot < 0) return false;
+
+            table.flags[slot] |= FLAG_CLEARED;
+            table.clearedTime[slot] = toStamp(now);
+            markDirty(table, slot);
+            flagged.touch(key);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void put(long key, RedstoneDetector.ChunkData data) {
+        put(key, data, true);
+    }
+
+    /**
+     * Данные, прочитанные с диска, не требуют повторного сохранения. Загрузка идёт уже после публикации
+     * индекса, поэтому чанки, отсканированные или удалённые за это время, не перезаписываются.
+     */
+    void putLoaded(long key, RedstoneDetector.ChunkData data) {
+        long stamp = lock.writeLock();
+        try {
+            if (table.find(key) >= 0 || removed.contains(key)) return;
+            putLocked(key, data, false);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void put(long key, RedstoneDetector.ChunkData data, boolean dirty) {
+        long stamp = lock.writeLock();
+        try {
+            putLocked(key, data, dirty);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void putLocked(long key, RedstoneDetector.ChunkData data, boolean dirty) {
+        Table current = table;
+        int slot = current.find(key);
+        if (slot < 0) {
+            slot = insert(current, slot, key, data.firstDetected);
+            current = table;
+        }
+        current.redstone[slot] = data.redstoneCount;
+        current.entities[slot] = data.entityCount;
+        current.activity[slot] = data.activityRate;
+        current.tickCost[slot] = data.tickCostMicros;
+        current.firstDetected[slot] = toStamp(data.firstDetected);
+        current.lastScanned[slot] = toStamp(data.lastScanned);
+        current.lastModified[slot] = toStamp(data.lastModified);
+        current.clearedTime[slot] = toStamp(data.clearedTime);
+        current.flags[slot] = (byte) ((current.flags[slot] & FLAG_DIRTY) | (data.clearedByAdmin ? FLAG_CLEARED : 0));
+        if (dirty) markDirty(current, slot);
+        refreshFlagged(current, slot);
+    }
+
+    public boolean remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int slot = current.find(key);
+            if (slot < 0) return false;
+
+            shiftKeys(current, slot);
+            size--;
+            removed.add(key);
+            flagged.touch(key);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Помечает ключ, которого нет в индексе, для удаления из файла при следующем сохранении.
+     */
+    void markRemoved(long key) {
+        long stamp = lock.writeLock();
+        try {
+            if (table.find(key) < 0) removed.add(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean isDirty() {
+        long stamp = lock.readLock();
+        try {
+            return dirtyCount > 0 || !removed.isEmpty();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Передаёт visitor изменённые с последнего вызова чанки, снимает с них отметку
+     * и возвращает ключи удалённых чанков. Visitor вызывается под блокировкой записи.
+     */
+    long[] drainDirty(Visitor visitor) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            for (int i = 0; i < dirtyCount; i++) {
+                int slot = current.find(dirtyKeys[i]);
+                if (slot >= 0 && (current.flags[slot] & FLAG_DIRTY) != 0) {
+                    current.flags[slot] &= ~FLAG_DIRTY;
+                    visitor.visit(dirtyKeys[i], current.read(slot));
+                }
+            }
+            dirtyCount = 0;
+            // После крупной миграции не держим большой массив
+            if (dirtyKeys.length > 4096) dirtyKeys = new long[64];
+            long[] removedKeys = removed.toArray();
+            removed.clear();
+            return removedKeys;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Возвращает отметки изменений после неудачного сохранения.
+     */
+    void restoreDirty(long[] keys, long[] removedKeys) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            for (long key : keys) {
+                int slot = current.find(key);
+                if (slot >= 0) markDirty(current, slot);
+            }
+            for (long key : removedKeys) {
+                if (current.find(key) < 0) removed.add(key);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void refreshFlagged(Table current, int slot) {
+        if (rule != null) flagged.touch(current.keys[slot]);
+    }
+
+    /**
+     * Пересчитывает список чанков для GUI по изменениям с прошлого вызова и исключает чанки,
+     * не сканировавшиеся дольше FLAGGED_RETENTION. Вызывается раз в секунду после публикации активности.
+     */
+    public void flushFlagged(long now) {
+        long stamp = lock.writeLock();
+        try {
+            flushFlaggedLocked(now);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void flushFlaggedLocked(long now) {
+        if (rule == null) return;
+        Table current = table;
+        flagged.flush((key, values) -> {
+            int slot = current.find(key);
+            if (slot < 0 || !rule.matches(current.redstone[slot], current.entities[slot], current.activity[slot],
+                    (current.flags[slot] & FLAG_CLEARED) != 0)) {
+                return false;
+            }
+            values[FlaggedChunks.Sort.REDSTONE.ordinal()] = current.redstone[slot];
+            values[FlaggedChunks.Sort.ENTITIES.ordinal()] = current.entities[slot];
+            values[FlaggedChunks.Sort.ACTIVITY.ordinal()] = current.activity[slot];
+            values[FlaggedChunks.Sort.LAST_SCANNED.ordinal()] = current.lastScanned[slot];
+            return true;
+        }, toStamp(now - FLAGGED_RETENTION));
+    }
+
+    /**
+     * Задаёт пороги, по которым ведётся список чанков для GUI, и перестраивает его.
+     */
+    public void setFlagRule(FlaggedChunks.Rule rule) {
+        long stamp = lock.writeLock();
+        try {
+            this.rule = rule;
+            flagged.clear();
+            Table current = table;
+            for (int slot = 0; slot < current.keys.length; slot++) {
+                if (current.keys[slot] != EMPTY) refreshFlagged(current, slot);
+            }
+            flushFlaggedLocked(System.currentTimeMillis());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Возвращает страницу из pageSize чанков, превышающих пороги, в порядке sort.
+     * Список читается под блокировкой чтения; если с прошлого пересчёта были изменения,
+     * они сначала применяются под блокировкой записи. Стоимость не зависит от размера мира.
+     */
+    public FlaggedPage flaggedPage(FlaggedChunks.Sort sort, int page, int pageSize) {
+        long stamp = lock.readLock();
+        try {
+            if (flagged.hasPending()) {
+                lock.unlockRead(stamp);
+                stamp = 0;
+                flushFlagged(System.currentTimeMillis());
+                stamp = lock.readLock();
+            }
+            int total = flagged.size();
+            int totalPages = Math.max(1, (total + pageSize - 1) / pageSize);
+            page = Math.max(0, Math.min(page, totalPages - 1));
+
+            long[] keys = new long[Math.min(pageSize, Math.max(0, total - page * pageSize))];
+            flagged.copy(sort, page * pageSize, keys);
+            RedstoneDetector.ChunkData[] data = new RedstoneDetector.ChunkData[keys.length];
+            Table current = table;
+            int count = 0;
+            for (long key : keys) {
+                // чанк мог быть удалён после пересчёта списка
+                int slot = current.find(key);
+                if (slot < 0) continue;
+                keys[count] = key;
+                data[count++] = current.read(slot);
+            }
+            if (count < keys.length) {
+                keys = Arrays.copyOf(keys, count);
+                data = Arrays.copyOf(data, count);
+            }
+            return new FlaggedPage(total, page, keys, data);
+        } finally {
+            if (stamp != 0) lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Удаляет чанки, не сканировавшиеся с scannedCutoff, и очищенные администратором до clearedCutoff.
+     * Таблица просматривается частями под блокировкой чтения, удаление идёт под блокировкой записи
+     * с повторной проверкой, поэтому обработчики событий не ждут обхода всего мира.
+     *
+     * @return число удалённых чанков
+     */
+    public int pruneExpired(long scannedCutoff, long clearedCutoff) {
+        int scannedStamp = toStamp(scannedCutoff);
+        int clearedStamp = toStamp(clearedCutoff);
+        long[] expired = new long[16];
+        int count = 0;
+        for (int from = 0; ; from += PRUNE_SLICE) {
+            long stamp = lock.readLock();
+            try {
+                Table current = table;
+                if (from >= current.keys.length) break;
+                int to = Math.min(current.keys.length, from + PRUNE_SLICE);
+                for (int slot = from; slot < to; slot++) {
+                    if (current.keys[slot] == EMPTY || !expired(current, slot, scannedStamp, clearedStamp)) continue;
+                    if (count == expired.length) expired = Arrays.copyOf(expired, count * 2);
+                    expired[count++] = current.keys[slot];
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (count == 0) return 0;
+
+        int pruned = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                Table current = table;
+                int slot = current.find(expired[i]);
+                // Чанк могли пересканировать, пока шёл обход
+                if (slot < 0 || !expired(current, slot, scannedStamp, clearedStamp)) continue;
+                shiftKeys(current, slot);
+                size--;
+                removed.add(expired[i]);
+                flagged.touch(expired[i]);
+                pruned++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return pruned;
+    }
+
+    private static boolean expired(Table current, int slot, int scannedStamp, int clearedStamp) {
+        return (current.flags[slot] & FLAG_CLEARED) != 0
+                ? current.clearedTime[slot] < clearedStamp
+                : current.lastScanned[slot] < scannedStamp;
+    }
+
+    private void shiftKeys(Table current, int gap) {
+        int mask = current.keys.length - 1;
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            long key = current.keys[index];
+            if (key == EMPTY) {
+                current.keys[gap] = EMPTY;
+                return;
+            }
+            int home = hash(key, mask);
+            if (gap <= index ? (home <= gap || home > index) : (home <= gap && home > index)) {
+                current.copy(index, current, gap);
+                gap = index;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        Table old = table;
+        Table resized = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] == EMPTY) continue;
+            old.copy(i, resized, -1 - resized.find(old.keys[i]));
+        }
+        table = resized;
+    }
+
+    /**
+     * Обходит все чанки под блокировкой чтения, передавая копии данных.
+     * Блокировка не реентерабельна, поэтому visitor не должен изменять этот индекс.
+     */
+    public void forEach(Visitor visitor) {
+        long stamp = lock.readLock();
+        try {
+            Table current = table;
+            for (int slot = 0; slot < current.keys.length; slot++) {
+                if (current.keys[slot] != EMPTY) {
+                    visitor.visit(current.keys[slot], current.read(slot));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(64);
+            size = 0;
+            dirtyCount = 0;
+            dirtyKeys = new long[64];
+            removed.clear();
+            flagged.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
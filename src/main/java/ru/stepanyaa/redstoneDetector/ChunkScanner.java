@@ -0,0 +1,272 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Подсчёт редстоуна в снимках чанков на пуле с перехватом работы (work stealing).
+ * Число снимков в памяти ограничено: при исчерпании лимита {@link #submit} отказывает,
+ * и чанк возвращается в очередь. Результаты сливаются в индексы миров пачками.
+ */
+public class ChunkScanner {
+
+    private static final int MERGE_BATCH = 64;
+
+    // redstoneCount < 0 - подсчёт упал, в индекс ничего не пишется, но onComplete вызывается
+    private record Result(String world, long chunkKey, int redstoneCount, int entityCount, Runnable onComplete) {
+        boolean failed() {
+            return redstoneCount < 0;
+        }
+    }
+
+    private final RedstoneDetector plugin;
+    private final ForkJoinPool executor;
+    private final Semaphore snapshots;
+    private final int maxSnapshots;
+    private final ConcurrentLinkedQueue<Result> results = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingResults = new AtomicInteger();
+
+    public ChunkScanner(RedstoneDetector plugin, int threads, int maxSnapshots) {
+        this.plugin = plugin;
+        int parallelism = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.executor = new ForkJoinPool(parallelism, new ScannerThreadFactory(), null, true);
+        this.maxSnapshots = Math.max(1, maxSnapshots);
+        this.snapshots = new Semaphore(this.maxSnapshots);
+    }
+
+    public boolean hasCapacity() {
+        return snapshots.availablePermits() > 0;
+    }
+
+    public int inFlight() {
+        return maxSnapshots - snapshots.availablePermits();
+    }
+
+    /**
+     * Захватывает снимок чанка в главном потоке (на Folia - в потоке региона) и отправляет подсчёт
+     * редстоуна в пул. Результат попадает в индекс мира при ближайшем слиянии пачки,
+     * после чего вызывается onComplete (если задан).
+     *
+     * @return false, если снимков в работе уже слишком много и чанк не отправлен
+     */
+    public boolean submit(Chunk chunk, Runnable onComplete) {
+        if (chunk == null || !chunk.isLoaded()) return false;
+        if (!snapshots.tryAcquire()) return false;
+
+        try {
+            World world = chunk.getWorld();
+            String worldName = world.getName();
+            long chunkKey = RedstoneDetector.ChunkCoordinate.key(chunk.getX(), chunk.getZ());
+            ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+            int minHeight = world.getMinHeight();
+            int maxHeight = world.getMaxHeight();
+            int entityCount = countEntities(chunk);
+
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                int redstoneCount = -1;
+                try {
+                    redstoneCount = countRedstone(snapshot, minHeight, maxHeight);
+                    plugin.getMetrics().snapshotCount.observeSince(start);
+                    plugin.getMetrics().chunksScanned.increment();
+                } catch (Throwable e) {
+                    plugin.getLogger().warning("Failed to count redstone in chunk " + chunkKey + " of " + worldName + ": " + e);
+                } finally {
+                    snapshots.release();
+                    // Завершение ставится в очередь всегда, иначе ожидающие задания (ForcedScanJob) не закончатся
+                    results.add(new Result(worldName, chunkKey, redstoneCount, entityCount, onComplete));
+                    if (pendingResults.incrementAndGet() >= MERGE_BATCH) {
+                        flush();
+                    }
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            snapshots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Сливает накопленные результаты в индексы: одна блокировка записи на мир и пачку.
+     * Вызывается потоками пула при наборе пачки и каждый тик из задачи сканирования.
+     */
+    public void flush() {
+        if (pendingResults.get() == 0) return;
+
+        List<Result> batch = new ArrayList<>();
+        Result result;
+        while ((result = results.poll()) != null) {
+            batch.add(result);
+            pendingResults.decrementAndGet();
+        }
+        if (batch.isEmpty()) return;
+
+        Map<String, List<Result>> byWorld = new HashMap<>();
+        for (Result item : batch) {
+            if (item.failed()) continue;
+            byWorld.computeIfAbsent(item.world(), name -> new ArrayList<>()).add(item);
+        }
+        for (Map.Entry<String, List<Result>> entry : byWorld.entrySet()) {
+            List<Result> items = entry.getValue();
+            long[] keys = new long[items.size()];
+            int[] redstone = new int[items.size()];
+            int[] entities = new int[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+                keys[i] = items.get(i).chunkKey();
+                redstone[i] = items.get(i).redstoneCount();
+                entities[i] = items.get(i).entityCount();
+            }
+            plugin.applyScanResults(entry.getKey(), keys, redstone, entities, items.size());
+        }
+        for (Result item : batch) {
+            if (item.onComplete() == null) continue;
+            try {
+                item.onComplete().run();
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("Scan completion callback failed: " + e.getMessage());
+            }
+        }
+    }
+
+    int countEntities(Chunk chunk) {
+        int count = 0;
+        for (Entity entity : chunk.getEntities()) {
+            if (!(entity instanceof Player)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static int countRedstone(ChunkSnapshot snapshot, int minHeight, int maxHeight) {
+        int count = 0;
+        int sections = (maxHeight - minHeight) >> 4;
+        for (int section = 0; section < sections; section++) {
+            // Пустые секции (только воздух) не могут содержать редстоун
+            if (snapshot.isSectionEmpty(section)) continue;
+
+            int baseY = minHeight + (section << 4);
+            for (int y = baseY; y < baseY + 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        if (RedstoneMaterials.contains(snapshot.getBlockType(x, y, z))) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Возвращает упакованные локальные позиции всех редстоун-компонентов снимка,
+     * пропуская пустые секции. Формат: (y - minHeight) << 8 | z << 4 | x.
+     */
+    static int[] findRedstone(ChunkSnapshot snapshot, int minHeight, int maxHeight) {
+        int[] positions = new int[64];
+        int size = 0;
+        int sections = (maxHeight - minHeight) >> 4;
+        for (int section = 0; section < sections; section++) {
+            if (snapshot.isSectionEmpty(section)) continue;
+
+            int baseY = minHeight + (section << 4);
+            for (int y = baseY; y < baseY + 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        if (RedstoneMaterials.contains(snapshot.getBlockType(x, y, z))) {
+                            if (size == positions.length) {
+                                positions = Arrays.copyOf(positions, size * 2);
+                            }
+                            positions[size++] = packPosition(x, y - minHeight, z);
+                        }
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(positions, size);
+    }
+
+    static int packPosition(int x, int relativeY, int z) {
+        return relativeY << 8 | z << 4 | x;
+    }
+
+    static int unpackX(int packed) {
+        return packed & 15;
+    }
+
+    static int unpackZ(int packed) {
+        return (packed >> 4) & 15;
+    }
+
+    static int unpackRelativeY(int packed) {
+        return packed >>> 8;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Результаты, не набравшие пачку, попадают в индекс до финального сохранения
+        flush();
+    }
+
+    private static class ScannerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("RedstoneDetector-Scanner-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
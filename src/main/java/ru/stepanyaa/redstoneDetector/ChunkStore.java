@@ -0,0 +1,125 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индексы данных о чанках по имени мира. Индекс мира создаётся при первом обращении
+ * и заполняется загрузчиком, поэтому данные неиспользуемых миров не читаются с диска.
+ * Пустой индекс публикуется сразу, а данные с диска дописываются в него по мере загрузки
+ * в потоке ввода-вывода, не перекрывая уже появившиеся записи.
+ */
+public class ChunkStore {
+
+    public interface Visitor {
+        void visit(RedstoneDetector.ChunkCoordinate coord, RedstoneDetector.ChunkData data);
+    }
+
+    public interface Loader {
+        // Не блокирует вызывающий поток: данные попадают в индекс через ChunkIndex#putLoaded
+        void load(String world, ChunkIndex index);
+    }
+
+    private final Map<String, ChunkIndex> worlds = new ConcurrentHashMap<>();
+    private final Loader loader;
+    private volatile FlaggedChunks.Rule flagRule = new FlaggedChunks.Rule(100, 100, 200, true);
+
+    public ChunkStore(Loader loader) {
+        this.loader = loader;
+    }
+
+    public ChunkIndex world(String world) {
+        ChunkIndex index = worlds.get(world);
+        if (index != null) return index;
+
+        ChunkIndex created = new ChunkIndex();
+        created.setFlagRule(flagRule);
+        index = worlds.putIfAbsent(world, created);
+        if (index != null) return index;
+        loader.load(world, created);
+        return created;
+    }
+
+    // Уже загруженный индекс мира или null
+    public ChunkIndex getLoadedWorld(String world) {
+        return worlds.get(world);
+    }
+
+    public FlaggedChunks.Rule getFlagRule() {
+        return flagRule;
+    }
+
+    // Новые пороги перестраивают списки чанков для GUI во всех загруженных мирах
+    public void setFlagRule(FlaggedChunks.Rule rule) {
+        flagRule = rule;
+        for (ChunkIndex index : worlds.values()) {
+            index.setFlagRule(rule);
+        }
+    }
+
+    // Изменения чанков применяются к спискам GUI пачкой, раз в секунду
+    public void flushFlagged(long now) {
+        for (ChunkIndex index : worlds.values()) {
+            index.flushFlagged(now);
+        }
+    }
+
+    public Set<String> worldNames() {
+        return worlds.keySet();
+    }
+
+    public RedstoneDetector.ChunkData get(String world, int chunkX, int chunkZ) {
+        return world(world).get(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ));
+    }
+
+    public RedstoneDetector.ChunkData get(RedstoneDetector.ChunkCoordinate coord) {
+        return get(coord.world(), coord.x(), coord.z());
+    }
+
+    public boolean remove(RedstoneDetector.ChunkCoordinate coord) {
+        return world(coord.world()).remove(coord.key());
+    }
+
+    public void forEach(Visitor visitor) {
+        for (Map.Entry<String, ChunkIndex> entry : worlds.entrySet()) {
+            String world = entry.getKey();
+            entry.getValue().forEach((key, data) -> visitor.visit(
+                    new RedstoneDetector.ChunkCoordinate(world, RedstoneDetector.ChunkCoordinate.keyX(key), RedstoneDetector.ChunkCoordinate.keyZ(key)), data));
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (ChunkIndex index : worlds.values()) size += index.size();
+        return size;
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+}
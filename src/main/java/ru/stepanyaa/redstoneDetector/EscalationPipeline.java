@@ -0,0 +1,356 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Поэтапная реакция на нагрузку от отдельных чанков: наблюдение, ограничение частоты сигналов,
+ * заморозка и удаление редстоуна. Переход на следующую ступень требует, чтобы её пороги держались
+ * min-dwell секунд; возврат на ступень ниже - cooldown секунд спокойствия и минимальное время на ступени.
+ * Обновляется раз в секунду из главного потока (на Folia - из глобального региона).
+ */
+public class EscalationPipeline {
+
+    public enum Tier { OBSERVE, THROTTLE, FREEZE, REMOVE }
+
+    /**
+     * Пороги ступени. Порог tickCostMs, равный нулю, не проверяется.
+     */
+    public record Thresholds(double serverMspt, int activity, double tickCostMs, int minDwellSeconds) {
+
+        static Thresholds load(ConfigurationSection section, Thresholds defaults) {
+            if (section == null) return defaults;
+            return new Thresholds(section.getDouble("server-mspt", defaults.serverMspt),
+                    section.getInt("activity", defaults.activity),
+                    section.getDouble("tick-cost-ms", defaults.tickCostMs),
+                    Math.max(0, section.getInt("min-dwell", defaults.minDwellSeconds)));
+        }
+
+        boolean chunkHot(RedstoneDetector.ChunkData data, double scale) {
+            return data.activityRate >= activity * scale
+                    || (tickCostMs > 0 && data.tickCostMicros >= tickCostMs * 1000 * scale);
+        }
+    }
+
+    private static final long STRIKE_MEMORY = 10 * 60000L;
+    private static final int MAX_STRIKE_SHIFT = 3;
+
+    private static final class State {
+        final UUID worldId;
+        Tier tier = Tier.OBSERVE;
+        long since;
+        // С какого момента выполнены пороги следующей ступени / ступень спокойна; 0 - нет
+        long hotSince;
+        long calmSince;
+        // Число заморозок; каждая следующая длится вдвое дольше
+        int strikes;
+        boolean ownsFreeze;
+
+        State(UUID worldId, long now) {
+            this.worldId = worldId;
+            this.since = now;
+        }
+    }
+
+    private final RedstoneDetector plugin;
+    private final Map<RedstoneDetector.ChunkCoordinate, State> states = new ConcurrentHashMap<>();
+    // Чанки с активностью или стоимостью за последнюю секунду, собранные при публикации; только главный поток
+    private final Set<RedstoneDetector.ChunkCoordinate> candidates = new HashSet<>();
+    // Остаток разрешённых изменений сигнала в текущей секунде для чанков на ступени THROTTLE; под блокировкой budgets
+    private final Map<UUID, LongIntHashMap> budgets = new HashMap<>();
+    private volatile boolean throttling = false;
+    private final Thresholds[] thresholds = new Thresholds[Tier.values().length];
+    private boolean removeEnabled = false;
+    private int maxSignals = 40;
+    private long cooldown = 30000;
+    private long freezeDuration = 120000;
+    private double hysteresis = 0.8;
+
+    public EscalationPipeline(RedstoneDetector plugin) {
+        this.plugin = plugin;
+    }
+
+    public void configure(FileConfiguration config, int maxActivity) {
+        thresholds[Tier.THROTTLE.ordinal()] = Thresholds.load(config.getConfigurationSection("response.throttle"),
+                new Thresholds(55.0, maxActivity / 2, 1.0, 3));
+        thresholds[Tier.FREEZE.ordinal()] = Thresholds.load(config.getConfigurationSection("response.freeze"),
+                new Thresholds(65.0, maxActivity, 2.5, 5));
+        thresholds[Tier.REMOVE.ordinal()] = Thresholds.load(config.getConfigurationSection("response.remove"),
+                new Thresholds(65.0, maxActivity * 2, 5.0, 120));
+        removeEnabled = config.getBoolean("response.remove.enabled", false);
+        maxSignals = Math.max(0, config.getInt("response.throttle.max-signals", 40));
+        cooldown = Math.max(1, config.getInt("response.cooldown", 30)) * 1000L;
+        hysteresis = Math.max(0.1, Math.min(1.0, config.getDouble("response.hysteresis", 0.8)));
+        freezeDuration = Math.max(0, config.getInt("freeze-duration", 120)) * 1000L;
+    }
+
+    public long getFreezeDuration() {
+        return freezeDuration;
+    }
+
+    public Tier getTier(RedstoneDetector.ChunkCoordinate coord) {
+        State state = states.get(coord);
+        return state == null ? Tier.OBSERVE : state.tier;
+    }
+
+    /**
+     * Списывает одно изменение мощности сигнала (BlockRedstoneEvent) из бюджета чанка. Возвращает false,
+     * если чанк ограничен и бюджет на эту секунду исчерпан. Вызывается из обработчика событий редстоуна.
+     */
+    public boolean allowSignal(UUID world, int chunkX, int chunkZ) {
+        if (!throttling) return true;
+        synchronized (budgets) {
+            LongIntHashMap worldBudgets = budgets.get(world);
+            if (worldBudgets == null) return true;
+
+            long key = RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ);
+            int left = worldBudgets.get(key);
+            if (left < 0) return true;
+            if (left == 0) return false;
+            worldBudgets.put(key, left - 1);
+            return true;
+        }
+    }
+
+    /**
+     * Исчерпан ли бюджет сигналов ограниченного чанка. Бюджет не списывается: физика и поршни
+     * блокируются только после того, как чанк израсходовал свои изменения сигнала.
+     */
+    public boolean isExhausted(UUID world, int chunkX, int chunkZ) {
+        if (!throttling) return false;
+        synchronized (budgets) {
+            LongIntHashMap worldBudgets = budgets.get(world);
+            return worldBudgets != null && worldBudgets.get(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ)) == 0;
+        }
+    }
+
+    /**
+     * Отмечает чанк с активностью или стоимостью событий как кандидата для ближайшего {@link #update}.
+     * Вызывается из публикации активности и стоимости раз в секунду.
+     */
+    public void observe(RedstoneDetector.ChunkCoordinate coord) {
+        candidates.add(coord);
+    }
+
+    /**
+     * Администратор заморозил чанк вручную: автоматическое снятие ступени его не размораживает.
+     */
+    public void disown(RedstoneDetector.ChunkCoordinate coord) {
+        State state = states.get(coord);
+        if (state != null) {
+            state.ownsFreeze = false;
+        }
+    }
+
+    /**
+     * Снимает с чанка все ограничения после ручной разморозки администратором.
+     */
+    public void reset(RedstoneDetector.ChunkCoordinate coord) {
+        State state = states.remove(coord);
+        if (state != null) {
+            refillBudgets();
+        }
+    }
+
+    public void clear() {
+        states.clear();
+        candidates.clear();
+        synchronized (budgets) {
+            budgets.clear();
+            throttling = false;
+        }
+    }
+
+    /**
+     * @param mspt 95-й перцентиль длительности тика за окно обнаружения лагов
+     */
+    public void update(long now, double mspt) {
+        Thresholds lowest = thresholds[Tier.THROTTLE.ordinal()];
+        double pressureMspt = serverMspt(lowest.serverMspt);
+        // Горячим может стать только чанк с активностью или стоимостью, поэтому весь индекс не обходится
+        Set<RedstoneDetector.ChunkCoordinate> coords = new HashSet<>(candidates);
+        candidates.clear();
+        if (states.isEmpty() && mspt < pressureMspt) {
+            return;
+        }
+        coords.addAll(states.keySet());
+
+        boolean pressure = mspt >= pressureMspt;
+        int[] entered = new int[Tier.values().length];
+        int released = 0;
+        for (RedstoneDetector.ChunkCoordinate coord : coords) {
+            // null - чанк пропал из индекса (удалён или истёк) и считается спокойным
+            RedstoneDetector.ChunkData data = plugin.getChunkStore().get(coord);
+            if (!states.containsKey(coord) && !(pressure && data != null && (lowest.chunkHot(data, 1.0) || isFlaggedActive(data)))) {
+                continue;
+            }
+            Tier before = getTier(coord);
+            Tier after = evaluate(coord, data, now, mspt);
+            if (after.ordinal() > before.ordinal()) entered[after.ordinal()]++;
+            else if (after.ordinal() < before.ordinal() && after == Tier.OBSERVE) released++;
+        }
+        forgetIdle(now);
+        refillBudgets();
+
+        logCount(entered[Tier.THROTTLE.ordinal()], "redstone.chunks_throttled_log", "Rate-limited redstone signals in {count} chunks");
+        logCount(entered[Tier.FREEZE.ordinal()], "redstone.chunks_frozen_log", "Frozen {count} offending chunks");
+        logCount(entered[Tier.REMOVE.ordinal()], "redstone.chunks_removed_log", "Removing redstone in {count} chunks that kept lagging the server while frozen");
+        logCount(released, "redstone.chunks_released_log", "Lifted restrictions from {count} chunks");
+    }
+
+    private Tier evaluate(RedstoneDetector.ChunkCoordinate coord, RedstoneDetector.ChunkData data, long now, double mspt) {
+        State state = states.get(coord);
+        Tier current = state == null ? Tier.OBSERVE : state.tier;
+
+        Tier next = current == Tier.REMOVE ? null : Tier.values()[current.ordinal() + 1];
+        if (next == Tier.REMOVE && !removeEnabled) next = null;
+        if (next != null && data != null && exceeds(next, data, mspt)) {
+            if (state == null) {
+                World world = plugin.getServer().getWorld(coord.world());
+                if (world == null) return current;
+                state = new State(world.getUID(), now);
+                states.put(coord, state);
+            }
+            if (state.hotSince == 0) state.hotSince = now;
+            if (now - state.hotSince >= thresholds[next.ordinal()].minDwellSeconds() * 1000L) {
+                enter(coord, state, next, now);
+                return next;
+            }
+        } else if (state != null) {
+            state.hotSince = 0;
+        }
+        if (state == null || current == Tier.OBSERVE) return current;
+
+        if (calm(current, data, mspt)) {
+            if (state.calmSince == 0) state.calmSince = now;
+            if (now - state.calmSince >= cooldown && now - state.since >= minimumStay(state)) {
+                leave(coord, state, now);
+            }
+        } else {
+            state.calmSince = 0;
+        }
+        return state.tier;
+    }
+
+    private boolean exceeds(Tier tier, RedstoneDetector.ChunkData data, double mspt) {
+        Thresholds limits = thresholds[tier.ordinal()];
+        if (mspt < serverMspt(limits.serverMspt)) return false;
+        // Чанки сверх лимитов плагина с работающим редстоуном ограничиваются и замораживаются без учёта порогов активности
+        return limits.chunkHot(data, 1.0) || (tier != Tier.REMOVE && isFlaggedActive(data));
+    }
+
+    // В замороженном чанке сигналы подавлены, поэтому о спокойствии судим только по серверу
+    private boolean calm(Tier tier, RedstoneDetector.ChunkData data, double mspt) {
+        Thresholds limits = thresholds[tier.ordinal()];
+        if (mspt < serverMspt(limits.serverMspt * hysteresis)) return true;
+        return tier == Tier.THROTTLE && (data == null || (!limits.chunkHot(data, hysteresis) && !isFlaggedActive(data)));
+    }
+
+    // Без длительностей тиков Paper MSPT не бывает ниже 50 мс, порог сдвигается выше этого пола
+    private double serverMspt(double threshold) {
+        return plugin.getTickMonitor().threshold(threshold);
+    }
+
+    private long minimumStay(State state) {
+        if (state.tier == Tier.THROTTLE) return 0;
+        return freezeDuration << Math.min(MAX_STRIKE_SHIFT, Math.max(0, state.strikes - 1));
+    }
+
+    private boolean isFlaggedActive(RedstoneDetector.ChunkData data) {
+        return data.activityRate > 0 && plugin.isChunkFlagged(data);
+    }
+
+    private void enter(RedstoneDetector.ChunkCoordinate coord, State state, Tier tier, long now) {
+        state.tier = tier;
+        state.since = now;
+        state.hotSince = 0;
+        state.calmSince = 0;
+        switch (tier) {
+            case FREEZE -> {
+                state.strikes++;
+                if (!plugin.isChunkFrozen(coord)) {
+                    plugin.holdChunk(coord);
+                    state.ownsFreeze = true;
+                }
+            }
+            // Резервная копия сохраняется, администратор может восстановить редстоун из GUI
+            case REMOVE -> plugin.disableRedstoneInChunk(coord, null);
+            default -> {
+            }
+        }
+    }
+
+    private void leave(RedstoneDetector.ChunkCoordinate coord, State state, long now) {
+        if (state.tier == Tier.FREEZE && state.ownsFreeze) {
+            plugin.releaseChunk(coord);
+            state.ownsFreeze = false;
+        }
+        state.tier = Tier.values()[state.tier.ordinal() - 1];
+        state.since = now;
+        state.hotSince = 0;
+        state.calmSince = 0;
+    }
+
+    // Чанки на ступени наблюдения помнят прошлые заморозки ещё STRIKE_MEMORY
+    private void forgetIdle(long now) {
+        Iterator<State> iterator = states.values().iterator();
+        while (iterator.hasNext()) {
+            State state = iterator.next();
+            if (state.tier == Tier.OBSERVE && state.hotSince == 0
+                    && (state.strikes == 0 || now - state.since >= STRIKE_MEMORY)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void refillBudgets() {
+        synchronized (budgets) {
+            budgets.clear();
+            for (Map.Entry<RedstoneDetector.ChunkCoordinate, State> entry : states.entrySet()) {
+                if (entry.getValue().tier != Tier.THROTTLE) continue;
+                budgets.computeIfAbsent(entry.getValue().worldId, k -> new LongIntHashMap(-1))
+                        .put(entry.getKey().key(), maxSignals);
+            }
+            throttling = !budgets.isEmpty();
+        }
+    }
+
+    private void logCount(int count, String key, String def) {
+        if (count > 0) {
+            plugin.getLogger().warning(plugin.getMessage(key, def).replace("{count}", String.valueOf(count)));
+        }
+    }
+}
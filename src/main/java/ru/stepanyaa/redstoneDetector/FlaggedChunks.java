@@ -0,0 +1,218 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.Arrays;
+
+/**
+ * Чанки мира, превышающие пороги, упорядоченные сразу по всем ключам сортировки GUI.
+ * Каждый порядок хранится отсортированным массивом, поэтому страница списка читается
+ * по смещению без обхода всего мира. Изменения данных только отмечают чанк, а порядки
+ * пересчитываются пачкой в {@link #flush} раз в секунду и перед открытием страницы.
+ * Не потокобезопасен: используется под блокировкой {@link ChunkIndex}.
+ */
+public class FlaggedChunks {
+
+    public enum Sort {
+        REDSTONE, ENTITIES, ACTIVITY, LAST_SCANNED;
+
+        public Sort next() {
+            Sort[] values = values();
+            return values[(ordinal() + 1) % values.length];
+        }
+    }
+
+    public record Rule(int maxRedstone, int maxEntities, int maxActivity, boolean ignoreIdleRedstone) {
+
+        public boolean matches(int redstone, int entities, int activity, boolean cleared) {
+            if (cleared) return false;
+            if (activity > maxActivity || entities > maxEntities) return true;
+            // Неактивные постройки с большим количеством компонентов тик не нагружают
+            return redstone > maxRedstone && (!ignoreIdleRedstone || activity > 0);
+        }
+    }
+
+    /**
+     * Текущие значения чанка для пересчёта: {@code values[sort.ordinal()]} для каждого порядка.
+     * Возвращает false, если чанка нет или он не превышает пороги.
+     */
+    interface Source {
+        boolean read(long key, int[] values);
+    }
+
+    // Ключи по убыванию значения, при равенстве по координатам x, затем z
+    private static final class View {
+        long[] keys = new long[16];
+        int[] values = new int[16];
+        int size;
+
+        /**
+         * Убирает ключи из drop и вливает count новых записей за один проход.
+         */
+        void rebuild(LongHashSet drop, long[] addKeys, int[] addValues, int count) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (drop.contains(keys[i])) continue;
+                keys[kept] = keys[i];
+                values[kept] = values[i];
+                kept++;
+            }
+            size = kept;
+            if (count == 0) return;
+
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) order[i] = i;
+            sort(order, new int[count], 0, count, addKeys, addValues);
+
+            int total = size + count;
+            if (total > keys.length) {
+                int capacity = Math.max(total, keys.length << 1);
+                keys = Arrays.copyOf(keys, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            // Слияние с конца на месте: старые записи сдвигаются вправо не дальше своих новых позиций
+            int old = size - 1;
+            int add = count - 1;
+            for (int target = total - 1; add >= 0; target--) {
+                int next = order[add];
+                if (old >= 0 && compare(values[old], keys[old], addValues[next], addKeys[next]) > 0) {
+                    keys[target] = keys[old];
+                    values[target] = values[old];
+                    old--;
+                } else {
+                    keys[target] = addKeys[next];
+                    values[target] = addValues[next];
+                    add--;
+                }
+            }
+            size = total;
+        }
+
+        // Сортировка слиянием индексов новых записей без упаковки в объекты
+        private static void sort(int[] order, int[] buffer, int from, int to, long[] keys, int[] values) {
+            if (to - from < 2) return;
+            int mid = (from + to) >>> 1;
+            sort(order, buffer, from, mid, keys, values);
+            sort(order, buffer, mid, to, keys, values);
+            if (compare(values[order[mid - 1]], keys[order[mid - 1]], values[order[mid]], keys[order[mid]]) <= 0) return;
+
+            System.arraycopy(order, from, buffer, from, to - from);
+            int left = from;
+            int right = mid;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < mid && compare(values[buffer[left]], keys[buffer[left]], values[buffer[right]], keys[buffer[right]]) <= 0)) {
+                    order[i] = buffer[left++];
+                } else {
+                    order[i] = buffer[right++];
+                }
+            }
+        }
+
+        private static int compare(int valueA, long keyA, int valueB, long keyB) {
+            int cmp = Integer.compare(valueB, valueA);
+            if (cmp != 0) return cmp;
+            cmp = Integer.compare(RedstoneDetector.ChunkCoordinate.keyX(keyA), RedstoneDetector.ChunkCoordinate.keyX(keyB));
+            if (cmp != 0) return cmp;
+            return Integer.compare(RedstoneDetector.ChunkCoordinate.keyZ(keyA), RedstoneDetector.ChunkCoordinate.keyZ(keyB));
+        }
+
+        void clear() {
+            keys = new long[16];
+            values = new int[16];
+            size = 0;
+        }
+    }
+
+    private final View[] views = new View[Sort.values().length];
+    // Чанки, изменившиеся с последнего пересчёта
+    private final LongHashSet pending = new LongHashSet();
+
+    FlaggedChunks() {
+        for (int i = 0; i < views.length; i++) {
+            views[i] = new View();
+        }
+    }
+
+    /**
+     * Отмечает чанк для пересчёта при ближайшем {@link #flush}. Стоимость не зависит от размера списка.
+     */
+    void touch(long key) {
+        pending.add(key);
+    }
+
+    boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Пересчитывает отмеченные чанки во всех порядках за один проход по каждому и исключает
+     * чанки, сканировавшиеся раньше cutoff (время в секундах {@link ChunkIndex}).
+     */
+    void flush(Source source, int cutoff) {
+        // Устаревшие лежат в конце порядка LAST_SCANNED
+        View byTime = views[Sort.LAST_SCANNED.ordinal()];
+        for (int i = byTime.size - 1; i >= 0 && byTime.values[i] < cutoff; i--) {
+            pending.add(byTime.keys[i]);
+        }
+        if (pending.isEmpty()) return;
+
+        long[] touched = pending.toArray();
+        long[] addKeys = new long[touched.length];
+        int[][] addValues = new int[views.length][touched.length];
+        int[] row = new int[views.length];
+        int count = 0;
+        for (long key : touched) {
+            if (!source.read(key, row) || row[Sort.LAST_SCANNED.ordinal()] < cutoff) continue;
+            addKeys[count] = key;
+            for (int view = 0; view < views.length; view++) {
+                addValues[view][count] = row[view];
+            }
+            count++;
+        }
+        for (int view = 0; view < views.length; view++) {
+            views[view].rebuild(pending, addKeys, addValues[view], count);
+        }
+        pending.clear();
+    }
+
+    int size() {
+        return views[0].size;
+    }
+
+    // Копирует в out до out.length ключей, начиная с позиции offset; возвращает их число
+    int copy(Sort sort, int offset, long[] out) {
+        View view = views[sort.ordinal()];
+        int count = Math.max(0, Math.min(out.length, view.size - offset));
+        System.arraycopy(view.keys, offset, out, 0, count);
+        return count;
+    }
+
+    void clear() {
+        for (View view : views) {
+            view.clear();
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Принудительное сканирование всех загруженных чанков, распределённое по тикам.
+ * Повторные запросы во время работы присоединяются к текущему заданию.
+ * На Folia каждый чанк сканируется в потоке своего региона.
+ */
+public class ForcedScanJob {
+
+    private static final long PROGRESS_INTERVAL = 2000;
+
+    private final RedstoneDetector plugin;
+    private final List<CommandSender> subscribers = new ArrayList<>();
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private final List<World> worlds;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final long startTime = System.currentTimeMillis();
+
+    private final long[][] chunkKeys;
+    private int worldIndex = 0;
+    private int chunkIndex = 0;
+    private int submitted = 0;
+    private int total = 0;
+    private long lastProgress = startTime;
+    private boolean finished = false;
+
+    public ForcedScanJob(RedstoneDetector plugin, List<World> worlds) {
+        this.plugin = plugin;
+        this.worlds = new ArrayList<>(worlds);
+        this.chunkKeys = new long[this.worlds.size()][];
+        for (int i = 0; i < chunkKeys.length; i++) {
+            chunkKeys[i] = plugin.loadedChunkKeys(this.worlds.get(i));
+            total += chunkKeys[i].length;
+        }
+    }
+
+    /**
+     * @return false, если задание уже завершилось и подписка не принята
+     */
+    public synchronized boolean subscribe(CommandSender sender, Runnable onComplete) {
+        if (finished) return false;
+        if (sender != null && !subscribers.contains(sender)) {
+            subscribers.add(sender);
+        }
+        if (onComplete != null) {
+            callbacks.add(onComplete);
+        }
+        return true;
+    }
+
+    /**
+     * Обрабатывает чанки до наступления deadline (System.nanoTime).
+     *
+     * @return true, когда все чанки отсканированы и колбэки выполнены
+     */
+    public boolean process(long deadline) {
+        while (worldIndex < worlds.size() && System.nanoTime() < deadline && plugin.getChunkScanner().hasCapacity()
+                && plugin.getScheduler().pendingRegionTasks() < RedstoneDetector.MAX_PENDING_REGION_TASKS) {
+            World world = worlds.get(worldIndex);
+            long[] keys = chunkKeys[worldIndex];
+            if (chunkIndex >= keys.length) {
+                chunkKeys[worldIndex] = null;
+                worldIndex++;
+                chunkIndex = 0;
+                continue;
+            }
+
+            long key = keys[chunkIndex++];
+            submitted++;
+            int x = RedstoneDetector.ChunkCoordinate.keyX(key);
+            int z = RedstoneDetector.ChunkCoordinate.keyZ(key);
+            plugin.getScheduler().runAtChunk(world, x, z, () -> {
+                if (!world.isChunkLoaded(x, z) || !plugin.scanOrRefresh(world.getChunkAt(x, z), completed::incrementAndGet)) {
+                    completed.incrementAndGet();
+                }
+            });
+        }
+
+        long now = System.currentTimeMillis();
+        boolean done = worldIndex >= worlds.size() && completed.get() >= submitted;
+        if (done) {
+            finish(now);
+        } else if (now - lastProgress >= PROGRESS_INTERVAL) {
+            lastProgress = now;
+            reportProgress(now);
+        }
+        return done;
+    }
+
+    private void reportProgress(long now) {
+        int done = completed.get();
+        int percent = total == 0 ? 100 : (int) (done * 100L / total);
+        long elapsed = now - startTime;
+        long eta = done == 0 ? 0 : elapsed * Math.max(0, total - done) / done / 1000;
+        send(ChatColor.YELLOW + plugin.getMessage("chunk.scan_progress", "Scan progress: {done}/{total} chunks ({percent}%), ETA {eta}s")
+                .replace("{done}", String.valueOf(done))
+                .replace("{total}", String.valueOf(total))
+                .replace("{percent}", String.valueOf(percent))
+                .replace("{eta}", String.valueOf(eta)));
+    }
+
+    private void finish(long now) {
+        List<Runnable> completedCallbacks;
+        synchronized (this) {
+            finished = true;
+            completedCallbacks = new ArrayList<>(callbacks);
+        }
+        send(ChatColor.GREEN + plugin.getMessage("chunk.scan_complete", "Scan complete: {total} chunks in {time}s")
+                .replace("{total}", String.valueOf(submitted))
+                .replace("{time}", String.format("%.1f", (now - startTime) / 1000.0)));
+        for (Runnable callback : completedCallbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Forced scan callback failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void send(String message) {
+        for (CommandSender sender : subscribers) {
+            if (sender instanceof Player player && !player.isOnline()) continue;
+            sender.sendMessage(message);
+        }
+    }
+}
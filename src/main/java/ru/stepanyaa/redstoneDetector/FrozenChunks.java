@@ -0,0 +1,115 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Замороженные чанки и регионы (32x32 чанка) по мирам.
+ * Проверка в обработчиках событий - поиск примитивного long-ключа за O(1).
+ * Методы синхронизированы для Folia; пока ничего не заморожено, проверка обходится без блокировки.
+ */
+public class FrozenChunks {
+
+    private static final class WorldFrozen {
+        final LongHashSet chunks = new LongHashSet();
+        final LongHashSet regions = new LongHashSet();
+
+        boolean isEmpty() {
+            return chunks.isEmpty() && regions.isEmpty();
+        }
+    }
+
+    private final Map<UUID, WorldFrozen> worlds = new HashMap<>();
+    private volatile boolean empty = true;
+
+    public boolean isFrozen(UUID world, int chunkX, int chunkZ) {
+        if (empty) return false;
+        return isFrozenLocked(world, chunkX, chunkZ);
+    }
+
+    private synchronized boolean isFrozenLocked(UUID world, int chunkX, int chunkZ) {
+        WorldFrozen frozen = worlds.get(world);
+        if (frozen == null) return false;
+        return frozen.chunks.contains(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ))
+                || frozen.regions.contains(RedstoneDetector.ChunkCoordinate.key(chunkX >> 5, chunkZ >> 5));
+    }
+
+    public synchronized boolean isChunkFrozen(UUID world, int chunkX, int chunkZ) {
+        WorldFrozen frozen = worlds.get(world);
+        return frozen != null && frozen.chunks.contains(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ));
+    }
+
+    public synchronized boolean freezeChunk(UUID world, int chunkX, int chunkZ) {
+        empty = false;
+        return worlds.computeIfAbsent(world, k -> new WorldFrozen()).chunks.add(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ));
+    }
+
+    public synchronized boolean unfreezeChunk(UUID world, int chunkX, int chunkZ) {
+        WorldFrozen frozen = worlds.get(world);
+        if (frozen == null) return false;
+        boolean removed = frozen.chunks.remove(RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ));
+        if (frozen.isEmpty()) worlds.remove(world);
+        empty = worlds.isEmpty();
+        return removed;
+    }
+
+    public synchronized boolean freezeRegion(UUID world, int regionX, int regionZ) {
+        empty = false;
+        return worlds.computeIfAbsent(world, k -> new WorldFrozen()).regions.add(RedstoneDetector.ChunkCoordinate.key(regionX, regionZ));
+    }
+
+    public synchronized boolean unfreezeRegion(UUID world, int regionX, int regionZ) {
+        WorldFrozen frozen = worlds.get(world);
+        if (frozen == null) return false;
+        boolean removed = frozen.regions.remove(RedstoneDetector.ChunkCoordinate.key(regionX, regionZ));
+        if (frozen.isEmpty()) worlds.remove(world);
+        empty = worlds.isEmpty();
+        return removed;
+    }
+
+    public synchronized int chunkCount() {
+        int count = 0;
+        for (WorldFrozen frozen : worlds.values()) count += frozen.chunks.size();
+        return count;
+    }
+
+    public synchronized int regionCount() {
+        int count = 0;
+        for (WorldFrozen frozen : worlds.values()) count += frozen.regions.size();
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public synchronized void clear() {
+        worlds.clear();
+        empty = true;
+    }
+}
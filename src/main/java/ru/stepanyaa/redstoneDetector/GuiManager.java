@@ -27,21 +27,30 @@ package ru.stepanyaa.redstoneDetector;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.World;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
-import org.bukkit.event.inventory.InventoryCloseEvent;
-import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class GuiManager implements Listener {
 
@@ -54,20 +63,92 @@ public class GuiManager implements Listener {
         public String world;
         public int page;
         public RedstoneDetector.ChunkCoordinate chunkCoord;
+        public FlaggedChunks.Sort sort = FlaggedChunks.Sort.REDSTONE;
 
         public PlayerGuiState(GuiState state) {
             this.state = state;
         }
+
+        boolean sameAs(PlayerGuiState other) {
+            return other != null && state == other.state && page == other.page && sort == other.sort
+                    && Objects.equals(world, other.world) && Objects.equals(chunkCoord, other.chunkCoord);
+        }
+    }
+
+    // Изменения состояний копятся и записываются одним разом через эту задержку
+    private static final long SAVE_DELAY_SECONDS = 5;
+
+    // Действие предмета GUI; в PersistentDataContainer хранится его порядковый номер
+    private enum Action {
+        OPEN_WORLD, OPEN_CHUNK, PREVIOUS_PAGE, NEXT_PAGE, BACK_TO_WORLDS, CHANGE_SORT,
+        CHUNK_INFO, TELEPORT, REMOVE_REDSTONE, RESTORE_REDSTONE, FREEZE, UNFREEZE, BACK_TO_CHUNKS;
+
+        private static final Action[] VALUES = values();
+
+        static Action byId(Byte id) {
+            return id != null && id >= 0 && id < VALUES.length ? VALUES[id] : null;
+        }
     }
 
     private final RedstoneDetector plugin;
-    private final Map<UUID, PlayerGuiState> playerStates = new HashMap<>();
+    // Состояния не изменяются после помещения в карту, поэтому поток записи читает их без блокировок
+    private final Map<UUID, PlayerGuiState> playerStates = new ConcurrentHashMap<>();
+    private final AtomicBoolean statesDirty = new AtomicBoolean();
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final ScheduledThreadPoolExecutor saveExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "RedstoneDetector-GUI");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final NamespacedKey actionKey;
+    private final NamespacedKey worldKey;
+    private final NamespacedKey chunkKey;
 
     public GuiManager(RedstoneDetector plugin) {
         this.plugin = plugin;
+        this.actionKey = new NamespacedKey(plugin, "gui_action");
+        this.worldKey = new NamespacedKey(plugin, "gui_world");
+        this.chunkKey = new NamespacedKey(plugin, "gui_chunk");
+        // Отложенная запись при выключении не ждёт задержки: её выполняет shutdown()
+        saveExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    private void putState(Player player, PlayerGuiState state) {
+        PlayerGuiState previous = playerStates.put(player.getUniqueId(), state);
+        if (!state.sameAs(previous)) {
+            markStatesDirty();
+        }
+    }
+
+    private void markStatesDirty() {
+        statesDirty.set(true);
+        if (saveScheduled.compareAndSet(false, true)) {
+            try {
+                saveExecutor.schedule(this::writePlayerStates, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                // Плагин выключается; состояния запишет shutdown()
+                saveScheduled.set(false);
+            }
+        }
+    }
+
+    // Клик определяется по метке предмета, а не по локализованному названию
+    private void tag(ItemMeta meta, Action action) {
+        meta.getPersistentDataContainer().set(actionKey, PersistentDataType.BYTE, (byte) action.ordinal());
+    }
+
+    private void tag(ItemMeta meta, Action action, String world) {
+        tag(meta, action);
+        meta.getPersistentDataContainer().set(worldKey, PersistentDataType.STRING, world);
+    }
+
+    private void tag(ItemMeta meta, Action action, RedstoneDetector.ChunkCoordinate coord) {
+        tag(meta, action, coord.world());
+        meta.getPersistentDataContainer().set(chunkKey, PersistentDataType.LONG, coord.key());
     }
 
     public void openWorldSelectionGUI(Player player) {
+        long renderStart = System.nanoTime();
         String title = plugin.getMessage("gui.world_selection_title", "Select a World");
         Inventory gui = Bukkit.createInventory(null, 45, title);
         List<World> worlds = new ArrayList<>(Bukkit.getWorlds());
@@ -82,6 +163,7 @@ public class GuiManager implements Listener {
                 meta.setDisplayName(ChatColor.GREEN + world.getName());
                 String viewChunksText = plugin.getMessage("gui.world_view_chunks", "Click to view chunks");
                 meta.setLore(Collections.singletonList(ChatColor.GRAY + viewChunksText));
+                tag(meta, Action.OPEN_WORLD, world.getName());
                 item.setItemMeta(meta);
             }
 
@@ -91,8 +173,9 @@ public class GuiManager implements Listener {
         }
 
         PlayerGuiState state = new PlayerGuiState(GuiState.WORLD_SELECTION);
-        playerStates.put(player.getUniqueId(), state);
+        putState(player, state);
         player.openInventory(gui);
+        plugin.getMetrics().guiRender.observeSince(renderStart);
     }
 
     private Material getWorldIcon(World world) {
@@ -104,54 +187,41 @@ public class GuiManager implements Listener {
     }
 
     public void openChunksGUI(Player player, String worldName, int page) {
-        List<Map.Entry<RedstoneDetector.ChunkCoordinate, RedstoneDetector.ChunkData>> filteredChunks = new ArrayList<>();
-
-        long retentionTime = System.currentTimeMillis() - (24 * 60 * 60 * 1000);
-
-        for (Map.Entry<RedstoneDetector.ChunkCoordinate, RedstoneDetector.ChunkData> entry : plugin.getChunkMap().entrySet()) {
-            if (entry.getKey().world().equals(worldName) &&
-                    entry.getValue().lastScanned >= retentionTime &&
-                    (entry.getValue().redstoneCount.get() > plugin.getMaxRedstone() ||
-                            entry.getValue().entityCount.get() > plugin.getMaxEntities()) &&
-                    !entry.getValue().clearedByAdmin) {
-                filteredChunks.add(entry);
-            }
-        }
+        PlayerGuiState previous = playerStates.get(player.getUniqueId());
+        openChunksGUI(player, worldName, page, previous != null ? previous.sort : FlaggedChunks.Sort.REDSTONE);
+    }
 
-        filteredChunks.sort((a, b) -> {
-            int xCompare = Integer.compare(a.getKey().x(), b.getKey().x());
-            if (xCompare != 0) return xCompare;
-            return Integer.compare(a.getKey().z(), b.getKey().z());
-        });
+    public void openChunksGUI(Player player, String worldName, int page, FlaggedChunks.Sort sort) {
+        long renderStart = System.nanoTime();
 
-        int totalPages = Math.max(1, (int) Math.ceil((double) filteredChunks.size() / 45));
-        if (page < 0) page = 0;
-        if (page >= totalPages) page = totalPages > 0 ? totalPages - 1 : 0;
+        // Индекс мира держит чанки сверх порогов отсортированными, читаем только нужную страницу
+        ChunkIndex.FlaggedPage flagged = plugin.getChunkStore().world(worldName).flaggedPage(sort, page, 45);
+        page = flagged.page();
+        int totalPages = Math.max(1, (flagged.total() + 44) / 45);
 
         String title = plugin.getMessage("gui.chunk_list_title", "Chunks in {world} (Page {page}/{total})")
                 .replace("{world}", worldName)
                 .replace("{page}", String.valueOf(page + 1))
                 .replace("{total}", String.valueOf(totalPages));
         Inventory gui = Bukkit.createInventory(null, 54, title);
-        int start = page * 45;
-        int end = Math.min(start + 45, filteredChunks.size());
-
-        for (int i = start; i < end; i++) {
-            Map.Entry<RedstoneDetector.ChunkCoordinate, RedstoneDetector.ChunkData> entry = filteredChunks.get(i);
-            RedstoneDetector.ChunkCoordinate coord = entry.getKey();
-            RedstoneDetector.ChunkData data = entry.getValue();
 
-            ItemStack item = createChunkItem(coord, data);
-            gui.setItem(i - start, item);
+        long[] keys = flagged.keys();
+        for (int i = 0; i < keys.length; i++) {
+            RedstoneDetector.ChunkCoordinate coord = new RedstoneDetector.ChunkCoordinate(worldName,
+                    RedstoneDetector.ChunkCoordinate.keyX(keys[i]), RedstoneDetector.ChunkCoordinate.keyZ(keys[i]));
+            gui.setItem(i, createChunkItem(coord, flagged.data()[i]));
         }
 
         addNavigationButtons(gui, page, totalPages);
+        gui.setItem(51, createSortButton(sort));
 
         PlayerGuiState state = new PlayerGuiState(GuiState.CHUNK_LIST);
         state.world = worldName;
         state.page = page;
-        playerStates.put(player.getUniqueId(), state);
+        state.sort = sort;
+        putState(player, state);
         player.openInventory(gui);
+        plugin.getMetrics().guiRender.observeSince(renderStart);
     }
 
     private ItemStack createChunkItem(RedstoneDetector.ChunkCoordinate coord, RedstoneDetector.ChunkData data) {
@@ -163,19 +233,59 @@ public class GuiManager implements Listener {
 
             List<String> lore = new ArrayList<>();
             lore.add(ChatColor.GRAY + plugin.getMessage("gui.chunk_world", "World: {world}").replace("{world}", coord.world()));
-            lore.add(ChatColor.RED + plugin.getMessage("gui.chunk_redstone", "Redstone: {count}").replace("{count}", String.valueOf(data.redstoneCount.get())));
-            lore.add(ChatColor.GREEN + plugin.getMessage("gui.chunk_entities", "Entities: {count}").replace("{count}", String.valueOf(data.entityCount.get())));
+            lore.add(ChatColor.RED + plugin.getMessage("gui.chunk_redstone", "Redstone: {count}").replace("{count}", String.valueOf(data.redstoneCount)));
+            lore.add(ChatColor.GREEN + plugin.getMessage("gui.chunk_entities", "Entities: {count}").replace("{count}", String.valueOf(data.entityCount)));
+            lore.add(ChatColor.AQUA + plugin.getMessage("gui.chunk_activity", "Activity: {rate}/s").replace("{rate}", String.valueOf(data.activityRate)));
+            if (data.tickCostMicros > 0) {
+                lore.add(ChatColor.LIGHT_PURPLE + plugin.getMessage("gui.chunk_tick_cost", "Listener dispatch: {ms} ms")
+                        .replace("{ms}", String.format(Locale.ROOT, "%.2f", data.tickCostMicros / 1000.0)));
+            }
+            EscalationPipeline.Tier tier = plugin.getResponseTier(coord);
+            if (tier != EscalationPipeline.Tier.OBSERVE) {
+                String name = switch (tier) {
+                    case THROTTLE -> plugin.getMessage("gui.response_throttle", "signals rate-limited");
+                    case FREEZE -> plugin.getMessage("gui.response_freeze", "frozen");
+                    default -> plugin.getMessage("gui.response_remove", "redstone removed");
+                };
+                lore.add(ChatColor.GOLD + plugin.getMessage("gui.chunk_response", "Response: {tier}").replace("{tier}", name));
+            }
             lore.add(ChatColor.GRAY + plugin.getMessage("gui.chunk_detected", "Detected: {time}").replace("{time}", formatTime(data.lastScanned)));
+            BlockEditJob job = plugin.getEditJob(coord);
+            if (job != null) {
+                lore.add(editProgressLine(job));
+            }
             lore.add("");
             lore.add(ChatColor.GOLD + plugin.getMessage("gui.chunk_lclick", "Left-click: Open actions"));
             lore.add(ChatColor.GOLD + plugin.getMessage("gui.chunk_shift_rclick", "Shift + Right-click: Remove redstone"));
 
             meta.setLore(lore);
+            tag(meta, Action.OPEN_CHUNK, coord);
             item.setItemMeta(meta);
         }
         return item;
     }
 
+    private ItemStack createSortButton(FlaggedChunks.Sort sort) {
+        ItemStack item = createItem(Material.COMPARATOR, ChatColor.AQUA + plugin.getMessage("gui.sort_button", "Sort: {sort}")
+                .replace("{sort}", sortName(sort)), Action.CHANGE_SORT);
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setLore(Collections.singletonList(ChatColor.GRAY + plugin.getMessage("gui.sort_next", "Click: sort by {sort}")
+                    .replace("{sort}", sortName(sort.next()))));
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    private String sortName(FlaggedChunks.Sort sort) {
+        return switch (sort) {
+            case REDSTONE -> plugin.getMessage("gui.sort_redstone", "redstone");
+            case ENTITIES -> plugin.getMessage("gui.sort_entities", "entities");
+            case ACTIVITY -> plugin.getMessage("gui.sort_activity", "activity");
+            case LAST_SCANNED -> plugin.getMessage("gui.sort_last_scanned", "last scanned");
+        };
+    }
+
     private String formatTime(long timestamp) {
         long diff = System.currentTimeMillis() - timestamp;
         long minutes = diff / (60 * 1000);
@@ -197,6 +307,7 @@ public class GuiManager implements Listener {
             if (meta != null) {
                 String prevText = plugin.getMessage("gui.previous_page", "Previous Page");
                 meta.setDisplayName(ChatColor.YELLOW + prevText);
+                tag(meta, Action.PREVIOUS_PAGE);
                 prev.setItemMeta(meta);
             }
             gui.setItem(45, prev);
@@ -208,6 +319,7 @@ public class GuiManager implements Listener {
             if (meta != null) {
                 String nextText = plugin.getMessage("gui.next_page", "Next Page");
                 meta.setDisplayName(ChatColor.YELLOW + nextText);
+                tag(meta, Action.NEXT_PAGE);
                 next.setItemMeta(meta);
             }
             gui.setItem(53, next);
@@ -218,37 +330,75 @@ public class GuiManager implements Listener {
         if (meta != null) {
             String backText = plugin.getMessage("gui.back_to_worlds", "Back to Worlds");
             meta.setDisplayName(ChatColor.RED + backText);
+            tag(meta, Action.BACK_TO_WORLDS);
             back.setItemMeta(meta);
         }
         gui.setItem(49, back);
     }
 
     public void openChunkActionsMenu(Player player, RedstoneDetector.ChunkCoordinate coord) {
+        long renderStart = System.nanoTime();
         String title = plugin.getMessage("gui.chunk_actions_title", "Chunk Actions");
         Inventory gui = Bukkit.createInventory(null, 27, title);
 
-        gui.setItem(10, createItem(Material.BOOK, ChatColor.YELLOW + plugin.getMessage("gui.chunk_info", "View Chunk Details")));
-        gui.setItem(12, createItem(Material.ENDER_PEARL, ChatColor.GREEN + plugin.getMessage("gui.chunk_teleport", "Teleport to Chunk")));
-        gui.setItem(14, createItem(Material.REDSTONE_BLOCK, ChatColor.RED + plugin.getMessage("gui.chunk_remove_redstone", "Remove Redstone")));
-        gui.setItem(16, createItem(Material.EMERALD, ChatColor.GREEN + plugin.getMessage("gui.chunk_restore_redstone", "Restore Redstone")));
-        gui.setItem(22, createItem(Material.ARROW, ChatColor.GRAY + plugin.getMessage("gui.back_to_chunks", "Back to Chunks")));
+        gui.setItem(10, createItem(Material.BOOK, ChatColor.YELLOW + plugin.getMessage("gui.chunk_info", "View Chunk Details"), Action.CHUNK_INFO, coord));
+        gui.setItem(12, createItem(Material.ENDER_PEARL, ChatColor.GREEN + plugin.getMessage("gui.chunk_teleport", "Teleport to Chunk"), Action.TELEPORT, coord));
+        ItemStack removeItem = createItem(Material.REDSTONE_BLOCK, ChatColor.RED + plugin.getMessage("gui.chunk_remove_redstone", "Remove Redstone"), Action.REMOVE_REDSTONE, coord);
+        ItemStack restoreItem = createItem(Material.EMERALD, ChatColor.GREEN + plugin.getMessage("gui.chunk_restore_redstone", "Restore Redstone"), Action.RESTORE_REDSTONE, coord);
+        BlockEditJob job = plugin.getEditJob(coord);
+        if (job != null) {
+            ItemStack jobItem = job.getType() == BlockEditJob.Type.REMOVE ? removeItem : restoreItem;
+            ItemMeta meta = jobItem.getItemMeta();
+            if (meta != null) {
+                meta.setLore(Collections.singletonList(editProgressLine(job)));
+                jobItem.setItemMeta(meta);
+            }
+        }
+        gui.setItem(14, removeItem);
+        gui.setItem(16, restoreItem);
+        gui.setItem(20, createItem(Material.PACKED_ICE, ChatColor.AQUA + plugin.getMessage("gui.chunk_freeze", "Freeze Chunk"), Action.FREEZE, coord));
+        gui.setItem(22, createItem(Material.ARROW, ChatColor.GRAY + plugin.getMessage("gui.back_to_chunks", "Back to Chunks"), Action.BACK_TO_CHUNKS));
+        gui.setItem(24, createItem(Material.MAGMA_BLOCK, ChatColor.GOLD + plugin.getMessage("gui.chunk_unfreeze", "Unfreeze Chunk"), Action.UNFREEZE, coord));
 
         PlayerGuiState state = new PlayerGuiState(GuiState.CHUNK_ACTIONS);
         if (playerStates.containsKey(player.getUniqueId())) {
             PlayerGuiState prevState = playerStates.get(player.getUniqueId());
             state.world = prevState.world;
             state.page = prevState.page;
+            state.sort = prevState.sort;
         }
         state.chunkCoord = coord;
-        playerStates.put(player.getUniqueId(), state);
+        putState(player, state);
         player.openInventory(gui);
+        plugin.getMetrics().guiRender.observeSince(renderStart);
+    }
+
+    private String editProgressLine(BlockEditJob job) {
+        String action = job.getType() == BlockEditJob.Type.REMOVE
+                ? plugin.getMessage("gui.edit_removing", "Removing redstone")
+                : plugin.getMessage("gui.edit_restoring", "Restoring redstone");
+        return ChatColor.YELLOW + plugin.getMessage("gui.edit_progress", "{action}: {percent}%")
+                .replace("{action}", action)
+                .replace("{percent}", String.valueOf(job.getProgress()));
     }
 
-    private ItemStack createItem(Material material, String name) {
+    private ItemStack createItem(Material material, String name, Action action) {
         ItemStack item = new ItemStack(material);
         ItemMeta meta = item.getItemMeta();
         if (meta != null) {
             meta.setDisplayName(name);
+            tag(meta, action);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    private ItemStack createItem(Material material, String name, Action action, RedstoneDetector.ChunkCoordinate coord) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(name);
+            tag(meta, action, coord);
             item.setItemMeta(meta);
         }
         return item;
@@ -262,114 +412,87 @@ public class GuiManager implements Listener {
         PlayerGuiState state = playerStates.get(player.getUniqueId());
         if (state == null) return;
 
-        String title = event.getView().getTitle();
         ItemStack item = event.getCurrentItem();
+        if (item == null || !item.hasItemMeta()) return;
 
-        if (item == null || !item.hasItemMeta() || !item.getItemMeta().hasDisplayName()) return;
-
-        String displayName = ChatColor.stripColor(item.getItemMeta().getDisplayName());
-
-        if (state.state == GuiState.WORLD_SELECTION) {
-            handleWorldSelectionClick(player, displayName);
-        }
-        else if (state.state == GuiState.CHUNK_LIST) {
-            handleChunkListClick(player, state, displayName, item, event.isShiftClick(), event.isRightClick());
-        }
-        else if (state.state == GuiState.CHUNK_ACTIONS) {
-            handleChunkActionsClick(player, state, displayName);
-        }
+        PersistentDataContainer container = item.getItemMeta().getPersistentDataContainer();
+        Action action = Action.byId(container.get(actionKey, PersistentDataType.BYTE));
+        if (action == null) return;
 
         event.setCancelled(true);
-    }
-
-    private void handleWorldSelectionClick(Player player, String displayName) {
-        // Просто используем displayName как название мира (без цветовых кодов)
-        openChunksGUI(player, displayName, 0);
-    }
-
-    private void handleChunkListClick(Player player, PlayerGuiState state, String displayName, ItemStack item, boolean isShiftClick, boolean isRightClick) {
-        String backToWorlds = ChatColor.stripColor(plugin.getMessage("gui.back_to_worlds", "Back to Worlds"));
-        String previousPage = ChatColor.stripColor(plugin.getMessage("gui.previous_page", "Previous Page"));
-        String nextPage = ChatColor.stripColor(plugin.getMessage("gui.next_page", "Next Page"));
-
-        if (displayName.equals(backToWorlds)) {
-            openWorldSelectionGUI(player);
-        }
-        else if (displayName.equals(previousPage)) {
-            openChunksGUI(player, state.world, state.page - 1);
-        }
-        else if (displayName.equals(nextPage)) {
-            openChunksGUI(player, state.world, state.page + 1);
-        }
-        else if (item != null && item.getType() == Material.MAP) {
-            // Извлекаем координаты из названия чанка
-            String chunkText = ChatColor.stripColor(plugin.getMessage("gui.chunk_item_name", "Chunk {coord}"));
-            String chunkName = displayName.replace(chunkText.replace("{coord}", ""), "").trim();
-            chunkName = chunkName.replace("[", "").replace("]", "");
-            String[] parts = chunkName.split(", ");
-
-            if (parts.length == 2) {
-                try {
-                    int x = Integer.parseInt(parts[0]);
-                    int z = Integer.parseInt(parts[1]);
-                    RedstoneDetector.ChunkCoordinate coord = new RedstoneDetector.ChunkCoordinate(state.world, x, z);
-
-                    if (isShiftClick && isRightClick) {
-                        plugin.disableRedstoneInChunk(player, coord);
-                        player.closeInventory();
-                        openChunksGUI(player, state.world, state.page);
-                    } else if (!isShiftClick && !isRightClick) {
-                        openChunkActionsMenu(player, coord);
-                    }
-                } catch (NumberFormatException e) {
-                    String errorMsg = plugin.getMessage("gui.error_chunk_processing", "Error processing chunk coordinates!");
-                    player.sendMessage(ChatColor.RED + errorMsg);
+        String world = container.get(worldKey, PersistentDataType.STRING);
+        Long key = container.get(chunkKey, PersistentDataType.LONG);
+        RedstoneDetector.ChunkCoordinate coord = world != null && key != null
+                ? new RedstoneDetector.ChunkCoordinate(world, RedstoneDetector.ChunkCoordinate.keyX(key), RedstoneDetector.ChunkCoordinate.keyZ(key))
+                : null;
+
+        switch (action) {
+            case OPEN_WORLD -> {
+                if (world != null) openChunksGUI(player, world, 0);
+            }
+            case PREVIOUS_PAGE -> openChunksGUI(player, state.world, state.page - 1);
+            case NEXT_PAGE -> openChunksGUI(player, state.world, state.page + 1);
+            // Смена сортировки возвращает на первую страницу
+            case CHANGE_SORT -> openChunksGUI(player, state.world, 0, state.sort.next());
+            case BACK_TO_WORLDS -> openWorldSelectionGUI(player);
+            case OPEN_CHUNK -> {
+                if (coord == null) return;
+                if (event.isShiftClick() && event.isRightClick()) {
+                    plugin.disableRedstoneInChunk(player, coord);
+                    player.closeInventory();
+                    openChunksGUI(player, state.world, state.page);
+                } else if (!event.isShiftClick() && !event.isRightClick()) {
+                    openChunkActionsMenu(player, coord);
                 }
             }
+            case BACK_TO_CHUNKS -> openChunksGUI(player, state.world, state.page);
+            default -> {
+                if (coord != null) handleChunkAction(player, action, coord);
+            }
         }
     }
 
-    private void handleChunkActionsClick(Player player, PlayerGuiState state, String displayName) {
-        String backToChunks = ChatColor.stripColor(plugin.getMessage("gui.back_to_chunks", "Back to Chunks"));
-        String chunkInfo = ChatColor.stripColor(plugin.getMessage("gui.chunk_info", "View Chunk Details"));
-        String chunkTeleport = ChatColor.stripColor(plugin.getMessage("gui.chunk_teleport", "Teleport to Chunk"));
-        String removeRedstone = ChatColor.stripColor(plugin.getMessage("gui.chunk_remove_redstone", "Remove Redstone"));
-        String restoreRedstone = ChatColor.stripColor(plugin.getMessage("gui.chunk_restore_redstone", "Restore Redstone"));
-
-        if (displayName.equals(backToChunks)) {
-            openChunksGUI(player, state.world, state.page);
-        }
-        else if (displayName.equals(chunkInfo)) {
-            plugin.openChunkDetails(player, state.chunkCoord);
-            player.closeInventory();
-        }
-        else if (displayName.equals(chunkTeleport)) {
-            plugin.teleportToChunk(player, state.chunkCoord);
-            player.closeInventory();
-        }
-        else if (displayName.equals(removeRedstone)) {
-            plugin.disableRedstoneInChunk(player, state.chunkCoord);
-            player.closeInventory();
-        }
-        else if (displayName.equals(restoreRedstone)) {
-            plugin.restoreRedstoneInChunk(player, state.chunkCoord);
-            player.closeInventory();
+    private void handleChunkAction(Player player, Action action, RedstoneDetector.ChunkCoordinate coord) {
+        switch (action) {
+            case CHUNK_INFO -> plugin.openChunkDetails(player, coord);
+            case TELEPORT -> plugin.teleportToChunk(player, coord);
+            case REMOVE_REDSTONE -> plugin.disableRedstoneInChunk(player, coord);
+            case RESTORE_REDSTONE -> plugin.restoreRedstoneInChunk(player, coord);
+            case FREEZE -> {
+                plugin.freezeChunk(coord);
+                player.sendMessage(ChatColor.GREEN + plugin.getMessage("command.chunk_frozen", "Chunk {coord} frozen!").replace("{coord}", coord.toDisplayString()));
+            }
+            case UNFREEZE -> {
+                plugin.unfreezeChunk(coord);
+                player.sendMessage(ChatColor.GREEN + plugin.getMessage("command.chunk_unfrozen", "Chunk {coord} unfrozen!").replace("{coord}", coord.toDisplayString()));
+            }
         }
+        player.closeInventory();
     }
 
-    @EventHandler
-    public void onPlayerQuit(PlayerQuitEvent event) {
-        savePlayerStates();
+    /**
+     * Отменяет отложенную запись и сохраняет несохранённые состояния в вызывающем потоке.
+     */
+    public void shutdown() {
+        saveExecutor.shutdown();
+        try {
+            if (!saveExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                saveExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writePlayerStates();
     }
 
-    @EventHandler
-    public void onInventoryClose(InventoryCloseEvent event) {
-        savePlayerStates();
-    }
+    // Запись выполняется в потоке сохранения или при выключении плагина
+    private synchronized void writePlayerStates() {
+        saveScheduled.set(false);
+        if (!statesDirty.getAndSet(false)) return;
 
-    public void savePlayerStates() {
         try {
             File file = new File(plugin.getDataFolder(), "player_states.yml");
+            File temp = new File(plugin.getDataFolder(), "player_states.yml.tmp");
             YamlConfiguration config = new YamlConfiguration();
             for (Map.Entry<UUID, PlayerGuiState> entry : playerStates.entrySet()) {
                 String path = "states." + entry.getKey();
@@ -377,12 +500,20 @@ public class GuiManager implements Listener {
                 config.set(path + ".state", state.state.name());
                 config.set(path + ".world", state.world);
                 config.set(path + ".page", state.page);
+                config.set(path + ".sort", state.sort.name());
                 if (state.chunkCoord != null) {
                     config.set(path + ".chunkCoord", state.chunkCoord.toString());
                 }
             }
-            config.save(file);
+            config.save(temp);
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
+            // Повторим при следующем изменении или при выключении
+            statesDirty.set(true);
             String errorMsg = plugin.getMessage("gui.error_saving_states", "Error saving player states: ");
             plugin.getLogger().severe(errorMsg + e.getMessage());
         }
@@ -404,6 +535,7 @@ public class GuiManager implements Listener {
                 );
                 state.world = config.getString(path + ".world");
                 state.page = config.getInt(path + ".page");
+                state.sort = FlaggedChunks.Sort.valueOf(config.getString(path + ".sort", FlaggedChunks.Sort.REDSTONE.name()));
                 String coordStr = config.getString(path + ".chunkCoord");
                 if (coordStr != null) {
                     state.chunkCoord = RedstoneDetector.ChunkCoordinate.fromString(coordStr);
@@ -0,0 +1,79 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Загруженные чанки по мирам для Folia, где {@code World#getLoadedChunks} нельзя обходить из одного потока.
+ * Обновляется событиями загрузки и выгрузки из потоков регионов; при включении плагина заполняется уже загруженными чанками.
+ */
+public class LoadedChunkTracker implements Listener {
+
+    private final Map<String, LongHashSet> worlds = new HashMap<>();
+
+    public synchronized long[] keys(World world) {
+        LongHashSet chunks = worlds.get(world.getName());
+        return chunks == null ? new long[0] : chunks.toArray();
+    }
+
+    public void add(World world, int chunkX, int chunkZ) {
+        long key = RedstoneDetector.ChunkCoordinate.key(chunkX, chunkZ);
+        synchronized (this) {
+            worlds.computeIfAbsent(world.getName(), name -> new LongHashSet()).add(key);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        add(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        long key = RedstoneDetector.ChunkCoordinate.key(chunk.getX(), chunk.getZ());
+        synchronized (this) {
+            LongHashSet chunks = worlds.get(chunk.getWorld().getName());
+            if (chunks != null) chunks.remove(key);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public synchronized void onWorldUnload(WorldUnloadEvent event) {
+        worlds.remove(event.getWorld().getName());
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Внутренние метрики плагина: счётчики и гистограммы на {@link LongAdder}, чтобы запись
+ * из обработчиков событий и потоков сканера не создавала конкуренции. Выводятся командой
+ * {@code /rd stats} и в текстовом формате Prometheus.
+ */
+public class PluginMetrics {
+
+    private static final String PREFIX = "redstonedetector_";
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Гистограмма длительностей с фиксированными границами корзин в миллисекундах.
+     */
+    public static final class Histogram {
+        private final double[] bounds;
+        private final LongAdder[] buckets;
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAdder count = new LongAdder();
+
+        Histogram(double... boundsMs) {
+            this.bounds = boundsMs;
+            this.buckets = new LongAdder[boundsMs.length];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        public void observeSince(long startNanos) {
+            observe(System.nanoTime() - startNanos);
+        }
+
+        public void observe(long nanos) {
+            double ms = nanos / 1_000_000.0;
+            for (int i = 0; i < bounds.length; i++) {
+                if (ms <= bounds[i]) {
+                    buckets[i].increment();
+                    break;
+                }
+            }
+            sumNanos.add(nanos);
+            count.increment();
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double averageMs() {
+            long n = count.sum();
+            return n == 0 ? 0 : sumNanos.sum() / 1_000_000.0 / n;
+        }
+    }
+
+    private record Entry(String help, Object metric) {
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    public final Counter chunksScanned = counter("chunks_scanned_total", "Chunk snapshots counted");
+    public final Counter scansRejected = counter("scans_rejected_total", "Scans postponed because the snapshot limit was reached");
+    public final Counter physicsCancelled = counter("physics_cancelled_total", "Redstone physics events cancelled");
+    public final Counter pistonsCancelled = counter("pistons_cancelled_total", "Piston events cancelled");
+    public final Counter signalsSuppressed = counter("signals_suppressed_total", "Redstone signal changes suppressed");
+    public final Counter chunkSaves = counter("chunk_saves_total", "Chunk data saves started");
+    public final Histogram scanTask = histogram("scan_task_seconds", "Duration of the per-tick scan task",
+            0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50);
+    public final Histogram snapshotCount = histogram("snapshot_count_seconds", "Time to count redstone in one chunk snapshot",
+            0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10);
+    public final Histogram saveSnapshot = histogram("save_snapshot_seconds", "Main thread time spent collecting changed chunks for a save",
+            0.1, 0.5, 1, 5, 10, 50, 100);
+    public final Histogram saveWrite = histogram("save_write_seconds", "Time until chunk data is written and replaced on disk",
+            1, 5, 10, 50, 100, 500, 1000, 5000);
+    public final Histogram guiRender = histogram("gui_render_seconds", "Time to build and open a GUI page",
+            0.5, 1, 2.5, 5, 10, 25, 50, 100);
+
+    private Counter counter(String name, String help) {
+        Counter counter = new Counter();
+        entries.put(name, new Entry(help, counter));
+        return counter;
+    }
+
+    private Histogram histogram(String name, String help, double... boundsMs) {
+        Histogram histogram = new Histogram(boundsMs);
+        entries.put(name, new Entry(help, histogram));
+        return histogram;
+    }
+
+    /**
+     * Регистрирует показатель, значение которого вычисляется при каждом выводе.
+     * Поставщик вызывается из потока HTTP-сервера, поэтому должен быть потокобезопасным.
+     */
+    public synchronized void gauge(String name, String help, DoubleSupplier supplier) {
+        entries.put(name, new Entry(help, supplier));
+    }
+
+    public synchronized String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Entry> item : entries.entrySet()) {
+            String name = PREFIX + item.getKey();
+            Entry entry = item.getValue();
+            out.append("# HELP ").append(name).append(' ').append(entry.help()).append('\n');
+            if (entry.metric() instanceof Counter counter) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                out.append(name).append(' ').append(counter.get()).append('\n');
+            } else if (entry.metric() instanceof Histogram histogram) {
+                out.append("# TYPE ").append(name).append(" histogram\n");
+                long cumulative = 0;
+                for (int i = 0; i < histogram.bounds.length; i++) {
+                    cumulative += histogram.buckets[i].sum();
+                    out.append(name).append("_bucket{le=\"").append(format(histogram.bounds[i] / 1000.0)).append("\"} ")
+                            .append(cumulative).append('\n');
+                }
+                out.append(name).append("_bucket{le=\"+Inf\"} ").append(histogram.count()).append('\n');
+                out.append(name).append("_sum ").append(format(histogram.sumNanos.sum() / 1e9)).append('\n');
+                out.append(name).append("_count ").append(histogram.count()).append('\n');
+            } else if (entry.metric() instanceof DoubleSupplier supplier) {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                out.append(name).append(' ').append(format(supplier.getAsDouble())).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+}
@@ -0,0 +1,402 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Резервные копии удалённого редстоуна на диске: backups/&lt;мир&gt;/&lt;x&gt;_&lt;z&gt;.bin.
+ * Копия чанка хранит упакованные локальные позиции блоков, палитру строк BlockData
+ * и содержимое контейнеров; файл сжимается GZIP. Копии читаются только при восстановлении,
+ * а при превышении лимита размера удаляются самые старые.
+ * Все операции с файлами выполняются в одном фоновом потоке, поэтому чтение видит
+ * результат всех ранее переданных записей.
+ */
+public class RedstoneBackupStore {
+
+    private static final int MAGIC = 0x5244424B; // "RDBK"
+    private static final byte VERSION = 1;
+
+    /**
+     * Копия удалённых блоков одного чанка. Позиции упакованы как в {@link ChunkScanner#packPosition}.
+     */
+    public static final class Backup {
+        public final int minHeight;
+        public final long created;
+        private final List<String> palette = new ArrayList<>();
+        private final Map<String, Integer> paletteIds = new HashMap<>();
+        private int[] positions = new int[64];
+        private int[] states = new int[64];
+        private final Map<Integer, byte[]> contents = new HashMap<>();
+        private int size;
+
+        public Backup(int minHeight) {
+            this(minHeight, System.currentTimeMillis());
+        }
+
+        private Backup(int minHeight, long created) {
+            this.minHeight = minHeight;
+            this.created = created;
+        }
+
+        public void add(int packedPosition, String blockData, ItemStack[] items) throws IOException {
+            addRaw(packedPosition, blockData, items == null ? null : serialize(items));
+        }
+
+        private void addRaw(int packedPosition, String blockData, byte[] items) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+            }
+            Integer state = paletteIds.get(blockData);
+            if (state == null) {
+                state = palette.size();
+                palette.add(blockData);
+                paletteIds.put(blockData, state);
+            }
+            if (items != null) {
+                contents.put(size, items);
+            }
+            positions[size] = packedPosition;
+            states[size] = state;
+            size++;
+        }
+
+        /**
+         * Объединяет эту копию с более старой: позиции, которых здесь нет, берутся из older.
+         */
+        public Backup mergedWith(Backup older) {
+            if (older == null || older.size == 0) return this;
+
+            Backup merged = new Backup(minHeight, Math.min(created, older.created));
+            Set<Integer> taken = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                merged.addRaw(positions[i], blockData(i), contents.get(i));
+                taken.add(positions[i]);
+            }
+            // Позиции старой копии приводим к высоте новой: мир мог сменить minHeight
+            int shift = (older.minHeight - minHeight) << 8;
+            for (int i = 0; i < older.size; i++) {
+                int position = older.positions[i] + shift;
+                if (position < 0 || !taken.add(position)) continue;
+                merged.addRaw(position, older.blockData(i), older.contents.get(i));
+            }
+            return merged;
+        }
+
+        /**
+         * Копия без записей, отмеченных в done.
+         */
+        public Backup without(boolean[] done) {
+            Backup rest = new Backup(minHeight, created);
+            for (int i = 0; i < size; i++) {
+                if (!done[i]) rest.addRaw(positions[i], blockData(i), contents.get(i));
+            }
+            return rest;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int position(int i) {
+            return positions[i];
+        }
+
+        public String blockData(int i) {
+            return palette.get(states[i]);
+        }
+
+        // Содержимое контейнера или null
+        public ItemStack[] contents(int i) throws IOException {
+            byte[] bytes = contents.get(i);
+            return bytes == null ? null : deserialize(bytes);
+        }
+    }
+
+    private final File directory;
+    private final Logger logger;
+    private volatile long maxBytes;
+    private final AtomicLong totalBytes = new AtomicLong();
+    // Копия, ожидающая записи; replace - записать как есть, иначе объединить с копией на диске
+    private record Pending(Backup backup, boolean replace) {
+    }
+
+    // Копии, которые ещё не записаны на диск
+    private final Map<RedstoneDetector.ChunkCoordinate, Pending> pending = new ConcurrentHashMap<>();
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RedstoneDetector-Backups");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RedstoneBackupStore(File directory, long maxBytes, Logger logger) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.logger = logger;
+        ioExecutor.execute(this::measure);
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    private File file(RedstoneDetector.ChunkCoordinate coord) {
+        return new File(new File(directory, coord.world()), coord.x() + "_" + coord.z() + ".bin");
+    }
+
+    public boolean has(RedstoneDetector.ChunkCoordinate coord) {
+        return pending.containsKey(coord) || file(coord).exists();
+    }
+
+    /**
+     * Сохраняет копию в фоновом потоке, объединяя её с уже сохранённой копией этого чанка:
+     * повторное удаление не теряет блоки, снятые раньше. На совпадающих позициях побеждает новая копия.
+     */
+    public void save(RedstoneDetector.ChunkCoordinate coord, Backup backup) {
+        pending.merge(coord, new Pending(backup, false),
+                (older, newer) -> new Pending(newer.backup().mergedWith(older.backup()), older.replace()));
+        ioExecutor.execute(() -> flush(coord));
+    }
+
+    /**
+     * Заменяет копию чанка целиком, например оставшимися после частичного восстановления блоками.
+     */
+    public void replace(RedstoneDetector.ChunkCoordinate coord, Backup backup) {
+        pending.put(coord, new Pending(backup, true));
+        ioExecutor.execute(() -> flush(coord));
+    }
+
+    // Записывает ожидающую копию; задания, чью копию уже записало предыдущее, ничего не делают
+    private void flush(RedstoneDetector.ChunkCoordinate coord) {
+        Pending entry = pending.get(coord);
+        if (entry == null) return;
+
+        File file = file(coord);
+        try {
+            Backup backup = entry.replace() || !file.exists() ? entry.backup() : entry.backup().mergedWith(read(file));
+            write(file, backup);
+            evictIfNeeded(file);
+        } catch (IOException e) {
+            logger.severe("Failed to save redstone backup for " + coord.toDisplayString() + ": " + e.getMessage());
+        } finally {
+            pending.remove(coord, entry);
+        }
+    }
+
+    /**
+     * Читает копию чанка в фоновом потоке; результат null, если копии нет.
+     */
+    public CompletableFuture<Backup> load(RedstoneDetector.ChunkCoordinate coord) {
+        return CompletableFuture.supplyAsync(() -> {
+            Pending entry = pending.get(coord);
+            if (entry != null && entry.replace()) return entry.backup();
+
+            File file = file(coord);
+            try {
+                Backup stored = file.exists() ? read(file) : null;
+                return entry == null ? stored : entry.backup().mergedWith(stored);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+    }
+
+    public void delete(RedstoneDetector.ChunkCoordinate coord) {
+        pending.remove(coord);
+        ioExecutor.execute(() -> {
+            File file = file(coord);
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes.addAndGet(-length);
+            }
+        });
+    }
+
+    private void write(File file, Backup backup) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+
+        long previous = file.length();
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(backup.created);
+            out.writeInt(backup.minHeight);
+
+            out.writeInt(backup.palette.size());
+            for (String blockData : backup.palette) {
+                out.writeUTF(blockData);
+            }
+
+            out.writeInt(backup.size);
+            for (int i = 0; i < backup.size; i++) {
+                out.writeInt(backup.positions[i]);
+                out.writeInt(backup.states[i]);
+            }
+
+            out.writeInt(backup.contents.size());
+            for (Map.Entry<Integer, byte[]> entry : backup.contents.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+
+        Path target = file.toPath();
+        try {
+            Files.move(temp.toPath(), target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        totalBytes.addAndGet(file.length() - previous);
+    }
+
+    private Backup read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a redstone backup: " + file.getName());
+            byte version = in.readByte();
+            if (version > VERSION) throw new IOException("Unsupported backup version " + version + ": " + file.getName());
+
+            long created = in.readLong();
+            Backup backup = new Backup(in.readInt(), created);
+
+            int paletteSize = in.readInt();
+            for (int i = 0; i < paletteSize; i++) {
+                String blockData = in.readUTF();
+                backup.paletteIds.put(blockData, i);
+                backup.palette.add(blockData);
+            }
+
+            int size = in.readInt();
+            backup.positions = new int[Math.max(1, size)];
+            backup.states = new int[Math.max(1, size)];
+            for (int i = 0; i < size; i++) {
+                backup.positions[i] = in.readInt();
+                backup.states[i] = in.readInt();
+            }
+            backup.size = size;
+
+            int containers = in.readInt();
+            for (int i = 0; i < containers; i++) {
+                int block = in.readInt();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                backup.contents.put(block, bytes);
+            }
+            return backup;
+        }
+    }
+
+    private void measure() {
+        if (!directory.exists()) return;
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            totalBytes.set(files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum());
+        } catch (IOException | UncheckedIOException e) {
+            logger.warning("Failed to measure redstone backups: " + e.getMessage());
+        }
+    }
+
+    // Удаляет самые старые копии, пока общий размер больше лимита
+    private void evictIfNeeded(File keep) {
+        if (totalBytes.get() <= maxBytes) return;
+
+        List<File> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.filter(path -> path.toString().endsWith(".bin")).forEach(path -> files.add(path.toFile()));
+        } catch (IOException | UncheckedIOException e) {
+            logger.warning("Failed to list redstone backups: " + e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparingLong(File::lastModified));
+
+        int evicted = 0;
+        for (File file : files) {
+            if (totalBytes.get() <= maxBytes) break;
+            if (file.equals(keep)) continue;
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes.addAndGet(-length);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            logger.info("Removed " + evicted + " oldest redstone backups to stay under the size limit");
+        }
+    }
+
+    private static byte[] serialize(ItemStack[] items) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(items);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ItemStack[] deserialize(byte[] bytes) throws IOException {
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (ItemStack[]) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Дожидается записи уже переданных копий.
+     */
+    public void shutdown() {
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warning("Redstone backup writer did not finish in 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
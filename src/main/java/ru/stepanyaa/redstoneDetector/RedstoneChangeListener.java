@@ -0,0 +1,134 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.PistonMoveReaction;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+import java.util.List;
+
+/**
+ * Поддерживает счётчики редстоуна в chunkMap в актуальном состоянии по событиям изменения блоков,
+ * чтобы полное сканирование чанка требовалось только при загрузке или для периодической сверки.
+ */
+public class RedstoneChangeListener implements Listener {
+
+    private final RedstoneDetector plugin;
+
+    public RedstoneChangeListener(RedstoneDetector plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        Block placed = event.getBlockPlaced();
+        BlockState replaced = event.getBlockReplacedState();
+        int delta = 0;
+        if (plugin.isRedstoneComponent(placed.getType())) delta++;
+        if (replaced != null && plugin.isRedstoneComponent(replaced.getType())) delta--;
+        if (delta != 0) {
+            plugin.adjustRedstoneCount(placed, delta);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        Block block = event.getBlock();
+        if (plugin.isRedstoneComponent(block.getType())) {
+            plugin.adjustRedstoneCount(block, -1);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        moveBlocks(event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        moveBlocks(event.getBlocks(), event.getDirection());
+    }
+
+    // Блоки сдвигаются на один блок в направлении поршня; счётчики меняются только при переходе границы чанка.
+    // В списке есть и блоки, которые поршень ломает (провод, повторители, факелы, рычаги) - они просто исчезают
+    private void moveBlocks(List<Block> blocks, BlockFace direction) {
+        for (Block block : blocks) {
+            if (!plugin.isRedstoneComponent(block.getType())) continue;
+            if (block.getPistonMoveReaction() == PistonMoveReaction.BREAK) {
+                plugin.adjustRedstoneCount(block, -1);
+                continue;
+            }
+
+            int fromX = block.getX() >> 4;
+            int fromZ = block.getZ() >> 4;
+            int toX = (block.getX() + direction.getModX()) >> 4;
+            int toZ = (block.getZ() + direction.getModZ()) >> 4;
+            if (fromX != toX || fromZ != toZ) {
+                plugin.adjustRedstoneCount(block.getWorld(), fromX, fromZ, -1);
+                plugin.adjustRedstoneCount(block.getWorld(), toX, toZ, 1);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        removeBlocks(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        removeBlocks(event.blockList());
+    }
+
+    private void removeBlocks(List<Block> blocks) {
+        for (Block block : blocks) {
+            if (plugin.isRedstoneComponent(block.getType())) {
+                plugin.adjustRedstoneCount(block, -1);
+            }
+        }
+    }
+
+    // Вода и лава смывают провода, повторители, факелы и т.п.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        Block to = event.getToBlock();
+        if (plugin.isRedstoneComponent(to.getType())) {
+            plugin.adjustRedstoneCount(to, -1);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        plugin.requestLoadScan(event.getChunk());
+    }
+}
@@ -38,16 +38,18 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.*;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.plugin.java.JavaPluginLoader;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bstats.bukkit.Metrics;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class RedstoneDetector extends JavaPlugin implements Listener, TabCompleter {
 
@@ -65,35 +67,102 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
         public String toDisplayString() {
             return "[" + x + ", " + z + "]";
         }
+
+        public long key() {
+            return key(x, z);
+        }
+
+        public static long key(int x, int z) {
+            return ((long) x << 32) | (z & 0xFFFFFFFFL);
+        }
+
+        public static int keyX(long key) {
+            return (int) (key >> 32);
+        }
+
+        public static int keyZ(long key) {
+            return (int) key;
+        }
     }
 
+    // Копия данных чанка из ChunkIndex; изменения вносятся через методы индекса
     public static class ChunkData {
-        public AtomicInteger redstoneCount = new AtomicInteger(0);
-        public AtomicInteger entityCount = new AtomicInteger(0);
+        public int redstoneCount = 0;
+        public int entityCount = 0;
         public long firstDetected = System.currentTimeMillis();
         public long lastScanned = System.currentTimeMillis();
+        public int activityRate = 0;
+        public int tickCostMicros = 0;
+        public long lastModified = 0;
         public boolean clearedByAdmin = false;
         public long clearedTime = 0;
     }
 
-    private final Map<ChunkCoordinate, ChunkData> chunkMap = new ConcurrentHashMap<>();
+    private final ChunkStore chunkStore = new ChunkStore(this::loadWorldChunkData);
     private GuiManager guiManager;
-    private boolean freezeRedstone = false;
+    private ChunkScanner chunkScanner;
+    // Окно из конфигурации задаётся в onEnable
+    private ActivityTracker activityTracker = new ActivityTracker(5);
+    private volatile boolean freezeRedstone = false;
+    private final FrozenChunks frozenChunks = new FrozenChunks();
+    private final EscalationPipeline escalation = new EscalationPipeline(this);
+    // Глобальная заморозка включена системой и снимается автоматически
+    private boolean systemFreeze = false;
+    // Заморозка командой администратора; автоматическое снятие её не трогает
+    private boolean manualFreeze = false;
+    private boolean globalFreezeFallback = true;
+    private long globalFreezeAfter = 30000;
     private long lastFreezeTime = 0;
     private boolean monitoringEnabled = true;
-    private double criticalTPS = 15.0;
+    private double criticalMspt = 65.0;
+    private double recoverMspt = 55.0;
     private int maxRedstone = 100;
     private int maxEntities = 100;
-    private final Map<ChunkCoordinate, Map<Location, Material>> redstoneBackups = new ConcurrentHashMap<>();
-    private final Set<Material> redstoneMaterials = new HashSet<>();
-    private int chunksPerTick = 3;
+    private int maxActivity = 200;
+    private RedstoneBackupStore backupStore;
+    private final TickMonitor tickMonitor = new TickMonitor();
+    private final TickProfiler tickProfiler = new TickProfiler();
+    private final ScanBudget scanBudget = new ScanBudget(tickMonitor);
+    private long consistencyScanInterval = 30 * 60000L;
+    private final ScanQueue scanQueue = new ScanQueue();
+    private final ScanQueue cancelQueue = new ScanQueue();
+    private volatile ForcedScanJob forcedScan;
+    // Задания удаления и восстановления редстоуна; на Folia шаги выполняются в потоках регионов
+    private final Map<ChunkCoordinate, BlockEditJob> editJobs = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Set<ChunkCoordinate> runningEdits = ConcurrentHashMap.newKeySet();
+    private final TaskScheduler scheduler = new TaskScheduler(this);
+    private LoadedChunkTracker loadedChunks;
+    private final PluginMetrics metrics = new PluginMetrics();
+    private MetricsHttpServer metricsServer;
+    // p95 MSPT на момент последней проверки; читается потоком метрик
+    private volatile double lastMspt = 0;
     private boolean firstCriticalState = true;
-    private File chunkDataFile;
-    private YamlConfiguration chunkDataConfig;
+    private ChunkDataStorage chunkDataStorage;
     private long lastTPSWarning = 0;
     private final long TPS_WARNING_COOLDOWN = 10000;
     private double lastReportedTPS = 20.0;
     private static final String CURRENT_VERSION = "1.0.0";
+    // На Folia ограничивает число сканирований, ожидающих своего региона
+    static final int MAX_PENDING_REGION_TASKS = 256;
+    private static final int PRIORITY_UNSCANNED = 150;
+    private static final int PRIORITY_OVER_LIMIT = 300;
+    private static final int PRIORITY_MODIFIED = 100;
+    private static final int PRIORITY_ACTIVITY_CAP = 500;
+    // Приоритеты очереди сброса редстоуна при заморозке
+    private static final int PRIORITY_CANCEL_FLAGGED = 100;
+    private static final int PRIORITY_CANCEL_FROZEN = 1000;
+    private static final long RECENTLY_MODIFIED = 60000;
+    // Сколько очищенный администратором чанк хранится, прежде чем его запись удаляется
+    static final long CLEARED_HOLD = 10 * 60000L;
+    // Сверка давно не сканированных загруженных чанков идёт в самом низком приоритете
+    private static final int PRIORITY_CONSISTENCY = 0;
+    private static final long CONSISTENCY_PASS_INTERVAL = 60000;
+    private static final int CONSISTENCY_CHECKS_PER_TICK = 512;
+    private List<World> consistencyWorlds = List.of();
+    private int consistencyWorld = 0;
+    private long[] consistencyKeys;
+    private int consistencyCursor = 0;
+    private long lastConsistencyPass = 0;
     private boolean isFirstEnable = true;
 
     private FileConfiguration messagesConfig;
@@ -101,6 +170,15 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
     private String language;
     private static final String[] SUPPORTED_LANGUAGES = {"en", "ru"};
 
+    public RedstoneDetector() {
+        super();
+    }
+
+    // Загрузка без PluginClassLoader - для нагрузочного стенда (loadtest/)
+    protected RedstoneDetector(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+
     @Override
     public void onEnable() {
         // Сначала загружаем сообщения
@@ -114,10 +192,12 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
         updateConfigFile();
         updateMessagesFiles();
 
-        chunkDataFile = new File(getDataFolder(), "chunk-data.yml");
-        loadChunkData();
+        chunkDataStorage = new ChunkDataStorage(new File(getDataFolder(), "chunk-data"), getLogger());
+        migrateLegacyChunkData();
+        backupStore = new RedstoneBackupStore(new File(getDataFolder(), "backups"), backupMaxBytes(), getLogger());
 
-        initializeRedstoneMaterials();
+        this.chunkScanner = new ChunkScanner(this, getConfig().getInt("scan-threads", 0), getConfig().getInt("scan-max-snapshots", 256));
+        this.activityTracker = new ActivityTracker(getConfig().getInt("activity-window", 5));
 
         // Теперь инициализируем guiManager после загрузки сообщений
         this.guiManager = new GuiManager(this);
@@ -126,14 +206,24 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
 
         getServer().getPluginManager().registerEvents(this, this);
         getServer().getPluginManager().registerEvents(guiManager, this);
+        getServer().getPluginManager().registerEvents(new RedstoneChangeListener(this), this);
+        getServer().getPluginManager().registerEvents(tickProfiler, this);
+        registerGauges();
+        startMetricsServer();
+        if (TaskScheduler.isFolia()) {
+            loadedChunks = new LoadedChunkTracker();
+            getServer().getPluginManager().registerEvents(loadedChunks, this);
+            seedLoadedChunks();
+        }
         registerCommands();
         startOptimizedChunkScanTask();
         startAutoSaveTask();
 
         getLogger().info(getMessage("plugin.enabled", "Plugin successfully enabled!"));
         this.isFirstEnable = false;
+        // bStats; поле metrics - собственные метрики плагина
         int pluginId = 27778;
-        Metrics metrics = new Metrics(this, pluginId);
+        new Metrics(this, pluginId);
     }
     private void updateConfigFile() {
         File configFile = new File(getDataFolder(), "config.yml");
@@ -259,30 +349,30 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
         return ChatColor.translateAlternateColorCodes('&', message);
     }
 
-    private void initializeRedstoneMaterials() {
-        Material[] materials = {
-                Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR,
-                Material.PISTON, Material.STICKY_PISTON, Material.OBSERVER,
-                Material.DISPENSER, Material.DROPPER, Material.HOPPER,
-                Material.REDSTONE_TORCH, Material.REDSTONE_BLOCK, Material.LEVER,
-                Material.STONE_BUTTON, Material.OAK_BUTTON, Material.TRIPWIRE_HOOK,
-                Material.TARGET
-        };
-        Collections.addAll(redstoneMaterials, materials);
-    }
-
-    private boolean isRedstoneComponent(Material material) {
-        return redstoneMaterials.contains(material);
+    boolean isRedstoneComponent(Material material) {
+        return RedstoneMaterials.contains(material);
     }
 
     @Override
     public void onDisable() {
+        scheduler.cancelTasks();
+        stopMetricsServer();
         // Добавляем проверки на null для всех компонентов
         if (guiManager != null) {
-            guiManager.savePlayerStates();
+            guiManager.shutdown();
+        }
+        if (chunkScanner != null) {
+            chunkScanner.shutdown();
         }
 
-        saveChunkData();
+        if (chunkDataStorage != null) {
+            // Последний снимок записывается до остановки потока хранилища
+            saveChunkData();
+            chunkDataStorage.shutdown();
+        }
+        if (backupStore != null) {
+            backupStore.shutdown();
+        }
         getLogger().info(getMessage("plugin.shutdown", "GUI states and chunk data saved"));
     }
 
@@ -311,6 +401,7 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
             case "redstone" -> redstoneCommand(sender, args);
             case "stopredstone" -> stopRedstoneCommand(sender);
             case "scan" -> scanCommand(sender);
+            case "stats" -> statsCommand(sender);
             default -> {
                 sendHelp(sender);
                 yield true;
@@ -338,6 +429,8 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
         }
         reloadConfig();
         loadConfig();
+        stopMetricsServer();
+        startMetricsServer();
         loadMessages();
         sender.sendMessage(ChatColor.GREEN + getMessage("command.reload_success", "Configuration reloaded!"));
         return true;
@@ -362,12 +455,46 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
                 monitoringEnabled = true;
                 sender.sendMessage(ChatColor.GREEN + getMessage("command.redstone_unfrozen", "Redstone unfrozen!"));
             }
-            case "status" -> sender.sendMessage(ChatColor.YELLOW + getMessage("command.redstone_status", "Redstone status: {status}").replace("{status}", (freezeRedstone ? ChatColor.RED + getMessage("command.redstone_status_frozen", "FROZEN") : ChatColor.GREEN + getMessage("command.redstone_status_active", "ACTIVE"))));
+            case "freezechunk", "unfreezechunk", "freezeregion", "unfreezeregion" -> chunkFreezeCommand(sender, args[1].toLowerCase());
+            case "status" -> {
+                sender.sendMessage(ChatColor.YELLOW + getMessage("command.redstone_status", "Redstone status: {status}").replace("{status}", (freezeRedstone ? ChatColor.RED + getMessage("command.redstone_status_frozen", "FROZEN") : ChatColor.GREEN + getMessage("command.redstone_status_active", "ACTIVE"))));
+                sender.sendMessage(ChatColor.YELLOW + getMessage("command.redstone_status_chunks", "Frozen chunks: {chunks}, regions: {regions}")
+                        .replace("{chunks}", String.valueOf(frozenChunks.chunkCount()))
+                        .replace("{regions}", String.valueOf(frozenChunks.regionCount())));
+            }
             default -> sender.sendMessage(ChatColor.RED + getMessage("command.redstone_usage", "Usage: /redstonedetector redstone [freeze|unfreeze|status]"));
         }
         return true;
     }
 
+    private void chunkFreezeCommand(CommandSender sender, String action) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(ChatColor.RED + getMessage("command.player_only", "This command is for players only!"));
+            return;
+        }
+        Chunk chunk = player.getLocation().getChunk();
+        ChunkCoordinate coord = new ChunkCoordinate(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+        ChunkCoordinate region = new ChunkCoordinate(coord.world(), coord.x() >> 5, coord.z() >> 5);
+        switch (action) {
+            case "freezechunk" -> {
+                freezeChunk(coord);
+                sender.sendMessage(ChatColor.GREEN + getMessage("command.chunk_frozen", "Chunk {coord} frozen!").replace("{coord}", coord.toDisplayString()));
+            }
+            case "unfreezechunk" -> {
+                unfreezeChunk(coord);
+                sender.sendMessage(ChatColor.GREEN + getMessage("command.chunk_unfrozen", "Chunk {coord} unfrozen!").replace("{coord}", coord.toDisplayString()));
+            }
+            case "freezeregion" -> {
+                frozenChunks.freezeRegion(chunk.getWorld().getUID(), region.x(), region.z());
+                sender.sendMessage(ChatColor.GREEN + getMessage("command.region_frozen", "Region {coord} frozen!").replace("{coord}", region.toDisplayString()));
+            }
+            default -> {
+                frozenChunks.unfreezeRegion(chunk.getWorld().getUID(), region.x(), region.z());
+                sender.sendMessage(ChatColor.GREEN + getMessage("command.region_unfrozen", "Region {coord} unfrozen!").replace("{coord}", region.toDisplayString()));
+            }
+        }
+    }
+
     private boolean stopRedstoneCommand(CommandSender sender) {
         if (!sender.hasPermission("redstonedetector.redstone")) {
             sender.sendMessage(ChatColor.RED + getMessage("command.no_permission_redstone", "You do not have permission to manage redstone!"));
@@ -384,11 +511,94 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
             sender.sendMessage(ChatColor.RED + getMessage("command.no_permission_scan", "You do not have permission to force a scan!"));
             return true;
         }
-        forceFullRedstoneScan();
-        sender.sendMessage(ChatColor.GREEN + getMessage("command.scan_started", "Forced chunk scan started!"));
+        if (forceFullRedstoneScan(sender, null)) {
+            sender.sendMessage(ChatColor.GREEN + getMessage("command.scan_started", "Forced chunk scan started!"));
+        } else {
+            sender.sendMessage(ChatColor.YELLOW + getMessage("command.scan_already_running", "A forced scan is already running, you will be notified when it finishes."));
+        }
+        return true;
+    }
+
+    private boolean statsCommand(CommandSender sender) {
+        if (!sender.hasPermission("redstonedetector.stats")) {
+            sender.sendMessage(ChatColor.RED + getMessage("command.no_permission_stats", "You do not have permission to view statistics!"));
+            return true;
+        }
+        sender.sendMessage(ChatColor.GOLD + getMessage("command.stats_header", "=== RedstoneDetector Statistics ==="));
+        sender.sendMessage(ChatColor.YELLOW + getMessage("command.stats_scans", "Scanned chunks: {count} (avg {avg} ms), postponed: {rejected}")
+                .replace("{count}", String.valueOf(metrics.chunksScanned.get()))
+                .replace("{avg}", formatMs(metrics.snapshotCount.averageMs()))
+                .replace("{rejected}", String.valueOf(metrics.scansRejected.get())));
+        sender.sendMessage(ChatColor.YELLOW + getMessage("command.stats_queues", "Scan queue: {scan}, cancel queue: {cancel}, edit jobs: {edits}, tracked chunks: {tracked}")
+                .replace("{scan}", String.valueOf(scanQueue.size()))
+                .replace("{cancel}", String.valueOf(cancelQueue.size()))
+                .replace("{edits}", String.valueOf(editJobs.size()))
+                .replace("{tracked}", String.valueOf(chunkStore.size())));
+        sender.sendMessage(ChatColor.YELLOW + getMessage("command.stats_task", "Scan task: avg {avg} ms per tick, server p95: {mspt} ms")
+                .replace("{avg}", formatMs(metrics.scanTask.averageMs()))
+                .replace("{mspt}", formatMs(lastMspt)));
+        sender.sendMessage(ChatColor.YELLOW + getMessage("command.stats_events", "Cancelled: physics {physics}, pistons {pistons}, suppressed signals {signals}")
+                .replace("{physics}", String.valueOf(metrics.physicsCancelled.get()))
+                .replace("{pistons}", String.valueOf(metrics.pistonsCancelled.get()))
+                .replace("{signals}", String.valueOf(metrics.signalsSuppressed.get())));
+        sender.sendMessage(ChatColor.YELLOW + getMessage("command.stats_saves", "Saves: {count}, main thread avg {snapshot} ms, write avg {write} ms")
+                .replace("{count}", String.valueOf(metrics.chunkSaves.get()))
+                .replace("{snapshot}", formatMs(metrics.saveSnapshot.averageMs()))
+                .replace("{write}", formatMs(metrics.saveWrite.averageMs())));
+        sender.sendMessage(ChatColor.YELLOW + getMessage("command.stats_gui", "GUI renders: {count}, avg {avg} ms")
+                .replace("{count}", String.valueOf(metrics.guiRender.count()))
+                .replace("{avg}", formatMs(metrics.guiRender.averageMs())));
         return true;
     }
 
+    private static String formatMs(double ms) {
+        return String.format(Locale.ROOT, "%.2f", ms);
+    }
+
+    private void registerGauges() {
+        metrics.gauge("scan_queue_size", "Chunks waiting to be scanned", scanQueue::size);
+        metrics.gauge("cancel_queue_size", "Chunks waiting for active redstone to be cancelled", cancelQueue::size);
+        metrics.gauge("edit_jobs", "Redstone removal and restore jobs in progress", editJobs::size);
+        metrics.gauge("snapshots_in_flight", "Chunk snapshots held by the scanner", () -> chunkScanner.inFlight());
+        metrics.gauge("tracked_chunks", "Chunks in the chunk index", chunkStore::size);
+        metrics.gauge("frozen_chunks", "Frozen chunks", frozenChunks::chunkCount);
+        metrics.gauge("redstone_frozen", "1 while redstone is frozen globally", () -> freezeRedstone ? 1 : 0);
+        metrics.gauge("server_tick_p95_milliseconds", "95th percentile tick duration used for lag detection", () -> lastMspt);
+    }
+
+    private void startMetricsServer() {
+        if (!getConfig().getBoolean("metrics.http-enabled", false)) return;
+
+        String host = getConfig().getString("metrics.bind", "127.0.0.1");
+        int port = getConfig().getInt("metrics.port", 9465);
+        try {
+            metricsServer = new MetricsHttpServer(metrics, host, port);
+            getLogger().info(getMessage("metrics.started", "Metrics endpoint: http://{host}:{port}/metrics")
+                    .replace("{host}", host).replace("{port}", String.valueOf(port)));
+        } catch (IOException e) {
+            getLogger().severe(getMessage("metrics.error_start", "Could not start the metrics endpoint: ") + e.getMessage());
+        }
+    }
+
+    private void stopMetricsServer() {
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+    }
+
+    TickMonitor getTickMonitor() {
+        return tickMonitor;
+    }
+
+    FrozenChunks getFrozenChunks() {
+        return frozenChunks;
+    }
+
+    PluginMetrics getMetrics() {
+        return metrics;
+    }
+
     private void sendHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GOLD + getMessage("command.help_header", "=== RedstoneDetector Help ==="));
         if (sender.hasPermission("redstonedetector.gui")) {
@@ -401,11 +611,16 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
             sender.sendMessage(ChatColor.YELLOW + "/redstonedetector redstone freeze" + ChatColor.WHITE + getMessage("command.help_redstone_freeze", " - Freeze redstone"));
             sender.sendMessage(ChatColor.YELLOW + "/redstonedetector redstone unfreeze" + ChatColor.WHITE + getMessage("command.help_redstone_unfreeze", " - Unfreeze redstone"));
             sender.sendMessage(ChatColor.YELLOW + "/redstonedetector redstone status" + ChatColor.WHITE + getMessage("command.help_redstone_status", " - Redstone status"));
+            sender.sendMessage(ChatColor.YELLOW + "/redstonedetector redstone freezechunk|unfreezechunk" + ChatColor.WHITE + getMessage("command.help_redstone_freezechunk", " - Freeze or unfreeze the chunk you are in"));
+            sender.sendMessage(ChatColor.YELLOW + "/redstonedetector redstone freezeregion|unfreezeregion" + ChatColor.WHITE + getMessage("command.help_redstone_freezeregion", " - Freeze or unfreeze the region (32x32 chunks) you are in"));
             sender.sendMessage(ChatColor.YELLOW + "/redstonedetector stopredstone" + ChatColor.WHITE + getMessage("command.help_stopredstone", " - Emergency stop"));
         }
         if (sender.hasPermission("redstonedetector.scan")) {
             sender.sendMessage(ChatColor.YELLOW + "/redstonedetector scan" + ChatColor.WHITE + getMessage("command.help_scan", " - Force chunk scan"));
         }
+        if (sender.hasPermission("redstonedetector.stats")) {
+            sender.sendMessage(ChatColor.YELLOW + "/redstonedetector stats" + ChatColor.WHITE + getMessage("command.help_stats", " - Plugin statistics"));
+        }
         sender.sendMessage(ChatColor.GOLD + getMessage("command.help_aliases", "Aliases: ") + ChatColor.YELLOW + "/rd");
     }
 
@@ -423,10 +638,13 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
                 if (sender.hasPermission("redstonedetector.scan")) {
                     completions.add("scan");
                 }
+                if (sender.hasPermission("redstonedetector.stats")) {
+                    completions.add("stats");
+                }
                 return completions;
             }
             if (args.length == 2 && args[0].equalsIgnoreCase("redstone")) {
-                return Arrays.asList("freeze", "unfreeze", "status");
+                return Arrays.asList("freeze", "unfreeze", "status", "freezechunk", "unfreezechunk", "freezeregion", "unfreezeregion");
             }
         }
         return Collections.emptyList();
@@ -435,281 +653,699 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
     private void loadConfig() {
         reloadConfig();
         FileConfiguration config = getConfig();
-        criticalTPS = config.getDouble("critical-tps", 15.0);
+        // Старые конфиги задают только critical-tps
+        if (!config.isSet("lag-detection.critical-mspt") && config.isSet("critical-tps")) {
+            criticalMspt = 1000.0 / Math.max(1.0, config.getDouble("critical-tps"));
+        } else {
+            criticalMspt = config.getDouble("lag-detection.critical-mspt", 65.0);
+        }
+        recoverMspt = Math.min(criticalMspt, config.getDouble("lag-detection.recover-mspt", criticalMspt * 0.85));
+        tickMonitor.setWindowSeconds(config.getInt("lag-detection.window-seconds", 5));
         maxRedstone = config.getInt("max-redstone", 100);
         maxEntities = config.getInt("max-entities", 100);
-        chunksPerTick = config.getInt("chunks-per-tick", 3);
+        maxActivity = config.getInt("max-activity", 200);
+        chunkStore.setFlagRule(new FlaggedChunks.Rule(maxRedstone, maxEntities, maxActivity,
+                config.getBoolean("ignore-idle-redstone", true)));
+        globalFreezeFallback = !"chunk-only".equalsIgnoreCase(config.getString("freeze-mode", "chunk"));
+        globalFreezeAfter = "global".equalsIgnoreCase(config.getString("freeze-mode", "chunk")) ? 0 : config.getInt("global-freeze-after", 30) * 1000L;
+        scanBudget.configure(config.getDouble("scan-budget.min-ms", 0.2), config.getDouble("scan-budget.max-ms", 5.0),
+                config.getDouble("scan-budget.target-mspt", 45.0));
+        consistencyScanInterval = config.getInt("consistency-scan-interval", 30) * 60000L;
+        tickProfiler.configure(config.getBoolean("profiler.enabled", false), config.getDouble("profiler.sample-rate", 0.1));
+        escalation.configure(config, maxActivity);
+        if (backupStore != null) {
+            backupStore.setMaxBytes(backupMaxBytes());
+        }
     }
 
-    private void loadChunkData() {
-        try {
-            if (!chunkDataFile.exists() && !chunkDataFile.createNewFile()) {
-                getLogger().severe(getMessage("data.error_chunk_file", "Failed to create chunk data file"));
+    private long backupMaxBytes() {
+        return getConfig().getLong("backup.max-size-mb", 64) * 1024 * 1024;
+    }
+
+    private long chunkDataRetention() {
+        return getConfig().getInt("chunk-data-retention", 24) * 3600000L;
+    }
+
+    // Вызывается хранилищем при первом обращении к миру; файл читается в потоке хранилища
+    private void loadWorldChunkData(String world, ChunkIndex index) {
+        if (chunkDataStorage == null) return;
+        chunkDataStorage.load(world, index, System.currentTimeMillis(), chunkDataRetention(), CLEARED_HOLD).whenComplete((loaded, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                getLogger().severe(getMessage("data.error_chunk_load", "Error loading chunk data for world {world}: ").replace("{world}", world) + cause.getMessage());
             }
-        } catch (IOException e) {
-            getLogger().severe(getMessage("data.error_chunk_create", "Error creating chunk data file: ") + e.getMessage());
-        }
+        });
+    }
 
-        chunkDataConfig = YamlConfiguration.loadConfiguration(chunkDataFile);
-        chunkMap.clear();
+    // Однократный перенос данных из chunk-data.yml в двоичные файлы
+    private void migrateLegacyChunkData() {
+        File legacyFile = new File(getDataFolder(), "chunk-data.yml");
+        if (!legacyFile.exists()) return;
+
+        YamlConfiguration legacyConfig = YamlConfiguration.loadConfiguration(legacyFile);
         long currentTime = System.currentTimeMillis();
-        boolean changed = false;
-
-        for (String key : chunkDataConfig.getKeys(false)) {
-            ConfigurationSection section = chunkDataConfig.getConfigurationSection(key);
-            if (section != null) {
-                ChunkCoordinate coord = ChunkCoordinate.fromString(key);
-                ChunkData data = new ChunkData();
-                data.redstoneCount.set(section.getInt("redstone"));
-                data.entityCount.set(section.getInt("entities"));
-                data.firstDetected = section.getLong("firstDetected");
-                data.lastScanned = section.getLong("lastScanned");
-                data.clearedByAdmin = section.getBoolean("cleared", false);
-                data.clearedTime = section.getLong("clearedTime", 0);
-
-                if (data.clearedByAdmin) {
-                    if (currentTime - data.clearedTime > 600000) {
-                        chunkDataConfig.set(key, null);
-                        changed = true;
-                    } else {
-                        Bukkit.getScheduler().runTaskLater(this, () -> chunkMap.remove(coord),
-                                (600000 - (currentTime - data.clearedTime)) / 50);
-                    }
-                } else if (currentTime - data.lastScanned > getConfig().getInt("chunk-data-retention", 24) * 3600000L) {
-                    chunkDataConfig.set(key, null);
-                    changed = true;
-                } else {
-                    chunkMap.put(coord, data);
-                }
-            }
+        long retentionPeriod = chunkDataRetention();
+        int migrated = 0;
+
+        for (String key : legacyConfig.getKeys(false)) {
+            ConfigurationSection section = legacyConfig.getConfigurationSection(key);
+            if (section == null) continue;
+
+            ChunkCoordinate coord = ChunkCoordinate.fromString(key);
+            ChunkData data = new ChunkData();
+            data.redstoneCount = section.getInt("redstone");
+            data.entityCount = section.getInt("entities");
+            data.firstDetected = section.getLong("firstDetected");
+            data.lastScanned = section.getLong("lastScanned");
+            data.clearedByAdmin = section.getBoolean("cleared", false);
+            data.clearedTime = section.getLong("clearedTime", 0);
+
+            // Очищенные администратором чанки переносятся вместе с отметкой, пока она не истекла
+            if (data.clearedByAdmin ? currentTime - data.clearedTime > CLEARED_HOLD : currentTime - data.lastScanned > retentionPeriod) continue;
+            chunkStore.world(coord.world()).put(coord.key(), data);
+            migrated++;
         }
-        if (changed) saveChunkData();
-    }
 
-    public void saveChunkData() {
         try {
-            for (String key : chunkDataConfig.getKeys(false)) {
-                chunkDataConfig.set(key, null);
-            }
+            saveChunkData().join();
+        } catch (CompletionException e) {
+            return;
+        }
+        File migratedFile = new File(getDataFolder(), "chunk-data.yml.migrated");
+        if (!legacyFile.renameTo(migratedFile)) {
+            getLogger().warning(getMessage("data.error_chunk_migrate", "Could not rename chunk-data.yml after migration"));
+        }
+        getLogger().info(getMessage("data.migrated", "Migrated {count} chunks from chunk-data.yml to the binary format").replace("{count}", String.valueOf(migrated)));
+    }
 
-            long retentionPeriod = getConfig().getInt("chunk-data-retention", 24) * 3600000L;
-            long currentTime = System.currentTimeMillis();
+    /**
+     * Снимает изменённые записи в главном потоке и записывает их на диск в потоке хранилища.
+     * Результат - число сохранённых записей, 0 если изменений не было.
+     */
+    public CompletableFuture<Integer> saveChunkData() {
+        long start = System.nanoTime();
+        List<ChunkDataStorage.Snapshot> snapshots = new ArrayList<>();
+        for (String world : chunkStore.worldNames()) {
+            ChunkDataStorage.Snapshot snapshot = chunkDataStorage.snapshot(world, chunkStore.getLoadedWorld(world));
+            if (snapshot != null) snapshots.add(snapshot);
+        }
+        metrics.saveSnapshot.observeSince(start);
+        if (snapshots.isEmpty()) return CompletableFuture.completedFuture(0);
+
+        metrics.chunkSaves.increment();
+        long writeStart = System.nanoTime();
+        return chunkDataStorage.write(snapshots).whenComplete((saved, error) -> {
+            metrics.saveWrite.observeSince(writeStart);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                getLogger().severe(getMessage("data.error_chunk_save", "Error saving chunk data: ") + cause.getMessage());
+            }
+        });
+    }
 
-            for (Map.Entry<ChunkCoordinate, ChunkData> entry : chunkMap.entrySet()) {
-                ChunkCoordinate coord = entry.getKey();
-                ChunkData data = entry.getValue();
+    private void processEditJobs(long deadline) {
+        if (editJobs.isEmpty()) return;
 
-                if (currentTime - data.lastScanned <= retentionPeriod) {
-                    ConfigurationSection section = chunkDataConfig.createSection(coord.toString());
-                    section.set("redstone", data.redstoneCount.get());
-                    section.set("entities", data.entityCount.get());
-                    section.set("firstDetected", data.firstDetected);
-                    section.set("lastScanned", data.lastScanned);
-                    section.set("cleared", data.clearedByAdmin);
-                    section.set("clearedTime", data.clearedTime);
-                }
+        List<Map.Entry<ChunkCoordinate, BlockEditJob>> jobs;
+        synchronized (editJobs) {
+            jobs = new ArrayList<>(editJobs.entrySet());
+        }
+        for (Map.Entry<ChunkCoordinate, BlockEditJob> entry : jobs) {
+            long budget = deadline - System.nanoTime();
+            if (budget <= 0) break;
+
+            ChunkCoordinate coord = entry.getKey();
+            BlockEditJob job = entry.getValue();
+            World world = getServer().getWorld(coord.world());
+            // Шаг задания выполняется в потоке региона; следующий не планируется, пока не завершён предыдущий
+            if (world == null || !runningEdits.add(coord)) {
+                if (world == null && job.process(deadline)) editJobs.remove(coord);
+                continue;
             }
-
-            chunkDataConfig.save(chunkDataFile);
-        } catch (IOException e) {
-            getLogger().severe(getMessage("data.error_chunk_save", "Error saving chunk data: ") + e.getMessage());
+            scheduler.runAtChunk(world, coord.x(), coord.z(), () -> {
+                try {
+                    if (job.process(System.nanoTime() + budget)) {
+                        editJobs.remove(coord);
+                    }
+                } finally {
+                    runningEdits.remove(coord);
+                }
+            });
         }
     }
 
     private void startAutoSaveTask() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                saveChunkData();
-                getLogger().info(getMessage("data.autosave", "Data automatically saved"));
+        scheduler.runTimer(() -> {
+            saveChunkData().thenAccept(saved -> {
+                if (saved > 0) {
+                    getLogger().info(getMessage("data.autosave", "Data automatically saved"));
+                }
+            });
+            pruneChunkData();
+        }, 20 * 60 * 5, 20 * 60 * 5);
+    }
+
+    // Устаревшие записи удаляются в потоке хранилища и стираются из файлов при следующем сохранении
+    private void pruneChunkData() {
+        List<ChunkIndex> indexes = new ArrayList<>();
+        for (String world : chunkStore.worldNames()) {
+            indexes.add(chunkStore.getLoadedWorld(world));
+        }
+        chunkDataStorage.prune(indexes, System.currentTimeMillis(), chunkDataRetention(), CLEARED_HOLD).whenComplete((pruned, error) -> {
+            if (error != null) {
+                getLogger().warning("Error pruning chunk data: " + error.getMessage());
             }
-        }.runTaskTimer(this, 20 * 60 * 5, 20 * 60 * 5);
+        });
     }
 
     private void startOptimizedChunkScanTask() {
-        new BukkitRunnable() {
-            private final Queue<Chunk> chunkQueue = new LinkedList<>();
+        scheduler.runTimer(new Runnable() {
             private boolean wasLowTPS = false;
+            private long criticalSince = 0;
             private long lastTPSCheck = 0;
             private final long TPS_CHECK_INTERVAL = 1000;
 
             @Override
             public void run() {
+                long start = System.nanoTime();
+                try {
+                    tick();
+                } finally {
+                    metrics.scanTask.observeSince(start);
+                }
+            }
+
+            private void tick() {
+                tickMonitor.tick();
+                tickProfiler.tick();
+                chunkScanner.flush();
+
+                // Сканируем, пока не исчерпан бюджет времени на этот тик
+                long deadline = System.nanoTime() + scanBudget.next();
+                processEditJobs(deadline);
+                processCancelQueue(deadline);
+                ForcedScanJob job = forcedScan;
+                if (job != null && job.process(deadline)) {
+                    finishForcedScan(job);
+                }
                 if (!monitoringEnabled) return;
 
+                // На Folia чанки сканируются параллельно в потоках своих регионов
+                while (!scanQueue.isEmpty() && System.nanoTime() < deadline && chunkScanner.hasCapacity()
+                        && scheduler.pendingRegionTasks() < MAX_PENDING_REGION_TASKS) {
+                    long key = scanQueue.poll();
+                    World world = getServer().getWorld(scanQueue.world(key));
+                    int x = ScanQueue.chunkX(key);
+                    int z = ScanQueue.chunkZ(key);
+                    if (world == null) continue;
+                    scheduler.runAtChunk(world, x, z, () -> {
+                        // Выгруженные чанки отбрасываются лениво
+                        if (world.isChunkLoaded(x, z)) {
+                            scanChunk(world.getChunkAt(x, z));
+                        }
+                    });
+                }
+                processConsistencyPass(deadline);
+
                 long currentTime = System.currentTimeMillis();
                 if (currentTime - lastTPSCheck < TPS_CHECK_INTERVAL) {
                     return;
                 }
 
                 lastTPSCheck = currentTime;
-                double currentTPS = 20.0;
-                try {
-                    double[] recentTps = Bukkit.getTPS();
-                    if (recentTps != null && recentTps.length > 0) {
-                        currentTPS = recentTps[0];
-                    }
-                } catch (Exception e) {
-                    getLogger().warning(getMessage("tps.error", "Error retrieving TPS: ") + e.getMessage());
-                }
-
-                boolean criticalState = currentTPS < criticalTPS;
+                publishActivityRates();
+                publishTickCosts();
+                chunkStore.flushFlagged(currentTime);
+                // p95 длительности тика за короткое окно; выход из критического состояния по более низкому порогу
+                double mspt = tickMonitor.getPercentileMspt(0.95);
+                lastMspt = mspt;
+                double currentTPS = Math.min(20.0, 1000.0 / Math.max(1.0, mspt));
+                boolean criticalState = tickMonitor.hasFullWindow() && mspt >= tickMonitor.threshold(wasLowTPS ? recoverMspt : criticalMspt);
 
                 if (criticalState) {
                     if (firstCriticalState) {
                         firstCriticalState = false;
-                        forceFullRedstoneScan();
+                        forceFullRedstoneScan(null, null);
 
                         if (System.currentTimeMillis() - lastTPSWarning > TPS_WARNING_COOLDOWN) {
                             lastTPSWarning = System.currentTimeMillis();
                         }
                     }
 
+                    if (!wasLowTPS) {
+                        criticalSince = currentTime;
+                    }
                     wasLowTPS = true;
 
                     if (Math.abs(currentTPS - lastReportedTPS) > 1.0 &&
                             System.currentTimeMillis() - lastTPSWarning > TPS_WARNING_COOLDOWN) {
                         lastTPSWarning = System.currentTimeMillis();
                         lastReportedTPS = currentTPS;
-                        getLogger().warning(getMessage("tps.critical", "Critical TPS: ") + currentTPS);
+                        getLogger().warning(getMessage("tps.critical", "Critical TPS: ") + String.format("%.1f (p95 %.1f ms)", currentTPS, mspt));
                     }
 
-                    if (!freezeRedstone) {
+                    // Глобальная заморозка - крайняя мера, если поэтапной реакции по чанкам не хватило
+                    if (!freezeRedstone && globalFreezeFallback && currentTime - criticalSince >= globalFreezeAfter) {
                         setFreezeRedstone(true, "System");
                     }
-                    lastFreezeTime = System.currentTimeMillis();
-
-                    if (chunkQueue.isEmpty()) {
-                        for (World world : getServer().getWorlds()) {
-                            for (Chunk chunk : world.getLoadedChunks()) {
-                                if (chunk.isLoaded()) {
-                                    chunkQueue.add(chunk);
-                                }
-                            }
-                        }
-                    }
+                    lastFreezeTime = currentTime;
 
-                    for (int i = 0; i < chunksPerTick && !chunkQueue.isEmpty(); i++) {
-                        Chunk chunk = chunkQueue.poll();
-                        if (chunk != null && chunk.isLoaded()) {
-                            scanChunk(chunk);
-                        }
+                    if (scanQueue.isEmpty()) {
+                        queueSuspiciousChunks();
                     }
-                } else if (wasLowTPS) {
-                    wasLowTPS = false;
-                    firstCriticalState = true;
-                    chunkQueue.clear();
-
-                    long elapsed = currentTime - lastFreezeTime;
-                    long freezeDuration = getConfig().getInt("freeze-duration", 60) * 1000L;
-
-                    if (freezeRedstone && elapsed >= freezeDuration) {
+                } else {
+                    if (wasLowTPS) {
+                        wasLowTPS = false;
+                        firstCriticalState = true;
+                    }
+                    // Системная заморозка держится не меньше freeze-duration после последней секунды лага
+                    if (systemFreeze && currentTime - lastFreezeTime >= escalation.getFreezeDuration()) {
                         setFreezeRedstone(false, "System");
-                        getLogger().info(getMessage("tps.recovered", "Auto-unfreeze: TPS restored to ") + currentTPS);
+                        if (!freezeRedstone) getLogger().info(getMessage("tps.recovered", "Auto-unfreeze: TPS restored to ") + String.format("%.1f (p95 %.1f ms)", currentTPS, mspt));
                     }
                 }
+                if (tickMonitor.hasFullWindow()) {
+                    escalation.update(currentTime, mspt);
+                }
             }
-        }.runTaskTimer(this, 100, 1);
+        }, 100, 1);
     }
 
-    private void forceFullRedstoneScan() {
+    /**
+     * Запускает распределённое по тикам сканирование всех загруженных чанков.
+     * Если сканирование уже идёт, отправитель и колбэк присоединяются к нему.
+     *
+     * @return false, если запрос объединён с уже запущенным сканированием
+     */
+    public synchronized boolean forceFullRedstoneScan(CommandSender sender, Runnable onComplete) {
+        // Завершившееся задание больше не принимает подписчиков
+        if (forcedScan != null && forcedScan.subscribe(sender, onComplete)) {
+            return false;
+        }
         getLogger().info(getMessage("chunk.scan_forced", "Forced scanning of all chunks due to low TPS"));
+        forcedScan = new ForcedScanJob(this, getServer().getWorlds());
+        forcedScan.subscribe(sender, onComplete);
+        return true;
+    }
+
+    /**
+     * Постепенно обходит загруженные чанки и ставит в очередь те, что не сканировались дольше
+     * consistency-scan-interval. Не чаще раза в минуту, не больше CONSISTENCY_CHECKS_PER_TICK чанков за тик
+     * и только в остатке бюджета тика.
+     */
+    private void processConsistencyPass(long deadline) {
+        if (consistencyKeys == null && consistencyWorld >= consistencyWorlds.size()) {
+            long now = System.currentTimeMillis();
+            if (now - lastConsistencyPass < CONSISTENCY_PASS_INTERVAL) return;
+            lastConsistencyPass = now;
+            consistencyWorlds = new ArrayList<>(getServer().getWorlds());
+            consistencyWorld = 0;
+        }
+
+        int checked = 0;
+        while (consistencyWorld < consistencyWorlds.size() && checked < CONSISTENCY_CHECKS_PER_TICK && System.nanoTime() < deadline) {
+            World world = consistencyWorlds.get(consistencyWorld);
+            if (consistencyKeys == null) {
+                consistencyKeys = loadedChunkKeys(world);
+                consistencyCursor = 0;
+            }
+            if (consistencyCursor >= consistencyKeys.length) {
+                consistencyKeys = null;
+                consistencyWorld++;
+                continue;
+            }
+
+            long key = consistencyKeys[consistencyCursor++];
+            checked++;
+            if (needsScan(chunkStore.world(world.getName()), key)) {
+                scanQueue.offer(world, ChunkCoordinate.keyX(key), ChunkCoordinate.keyZ(key), PRIORITY_CONSISTENCY);
+            }
+        }
+    }
+
+    private synchronized void finishForcedScan(ForcedScanJob job) {
+        if (forcedScan == job) {
+            forcedScan = null;
+        }
+    }
+
+    // Чанки, загруженные до включения плагина (например, при перезагрузке), не получат ChunkLoadEvent.
+    // Каждый добавляется в потоке своего региона после проверки, что он всё ещё загружен
+    private void seedLoadedChunks() {
         for (World world : getServer().getWorlds()) {
-            for (Chunk chunk : world.getLoadedChunks()) {
-                if (chunk.isLoaded()) {
-                    scanChunk(chunk);
-                }
+            Chunk[] chunks;
+            try {
+                chunks = world.getLoadedChunks();
+            } catch (RuntimeException e) {
+                getLogger().warning("Could not list loaded chunks of " + world.getName() + ": " + e.getMessage());
+                continue;
+            }
+            for (Chunk chunk : chunks) {
+                int x = chunk.getX();
+                int z = chunk.getZ();
+                scheduler.runAtChunk(world, x, z, () -> {
+                    if (world.isChunkLoaded(x, z)) {
+                        loadedChunks.add(world, x, z);
+                    }
+                });
             }
         }
     }
 
-    private void scanChunk(Chunk chunk) {
-        if (chunk == null || !chunk.isLoaded()) return;
+    /**
+     * Упакованные координаты загруженных чанков мира. На Folia берутся из {@link LoadedChunkTracker}.
+     */
+    long[] loadedChunkKeys(World world) {
+        if (loadedChunks != null) {
+            return loadedChunks.keys(world);
+        }
+        Chunk[] chunks = world.getLoadedChunks();
+        long[] keys = new long[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            keys[i] = ChunkCoordinate.key(chunks[i].getX(), chunks[i].getZ());
+        }
+        return keys;
+    }
 
-        World world = chunk.getWorld();
-        ChunkCoordinate coord = new ChunkCoordinate(world.getName(), chunk.getX(), chunk.getZ());
-        ChunkData data = chunkMap.computeIfAbsent(coord, k -> new ChunkData());
+    TaskScheduler getScheduler() {
+        return scheduler;
+    }
 
-        if (data.clearedByAdmin) return;
+    ChunkScanner getChunkScanner() {
+        return chunkScanner;
+    }
+
+    // Счётчики редстоуна поддерживаются событиями, поэтому полностью сканируются только чанки без актуальных данных
+    boolean scanOrRefresh(Chunk chunk, Runnable onComplete) {
+        if (needsScan(chunk)) {
+            return scanChunk(chunk, onComplete);
+        }
+        chunkStore.world(chunk.getWorld().getName())
+                .setEntities(ChunkCoordinate.key(chunk.getX(), chunk.getZ()), chunkScanner.countEntities(chunk));
+        return false;
+    }
 
-        int redstoneCount = 0;
-        int entityCount = 0;
+    private void publishActivityRates() {
+        activityTracker.publish((worldId, chunkKey, rate) -> {
+            World world = getServer().getWorld(worldId);
+            if (world == null) return;
 
-        for (int y = world.getMinHeight(); y < world.getMaxHeight(); y++) {
-            for (int x = 0; x < 16; x++) {
-                for (int z = 0; z < 16; z++) {
-                    Block block = chunk.getBlock(x, y, z);
-                    if (isRedstoneComponent(block.getType())) {
-                        redstoneCount++;
-                    }
+            ChunkIndex index = chunkStore.world(world.getName());
+            index.setActivity(chunkKey, rate);
+            if (rate > 0) {
+                escalation.observe(new ChunkCoordinate(world.getName(), ChunkCoordinate.keyX(chunkKey), ChunkCoordinate.keyZ(chunkKey)));
+            }
+            // Очень активные чанки пересканируются в первую очередь
+            if (rate > maxActivity && world.isChunkLoaded(ChunkCoordinate.keyX(chunkKey), ChunkCoordinate.keyZ(chunkKey))) {
+                scanQueue.offer(world, ChunkCoordinate.keyX(chunkKey), ChunkCoordinate.keyZ(chunkKey), scanPriority(index.get(chunkKey)));
+            }
+        });
+    }
+
+    private void publishTickCosts() {
+        tickProfiler.publish((worldName, chunkKey, micros) -> {
+            chunkStore.world(worldName).setTickCost(chunkKey, micros);
+            if (micros > 0) {
+                escalation.observe(new ChunkCoordinate(worldName, ChunkCoordinate.keyX(chunkKey), ChunkCoordinate.keyZ(chunkKey)));
+            }
+        });
+    }
+
+    // Ставит в очередь загруженные чанки без актуальных данных, а также отмеченные, активные и недавно изменённые
+    private void queueSuspiciousChunks() {
+        for (World world : getServer().getWorlds()) {
+            ChunkIndex index = chunkStore.world(world.getName());
+            for (long key : loadedChunkKeys(world)) {
+                int priority = scanPriority(index.get(key));
+                if (priority > 0 || needsScan(index, key)) {
+                    scanQueue.offer(world, ChunkCoordinate.keyX(key), ChunkCoordinate.keyZ(key), priority);
                 }
             }
         }
+    }
+
+    private int scanPriority(ChunkData data) {
+        if (data == null) return PRIORITY_UNSCANNED;
+        if (data.clearedByAdmin) return 0;
+
+        int priority = Math.min(data.activityRate, PRIORITY_ACTIVITY_CAP);
+        if (data.redstoneCount > maxRedstone || data.entityCount > maxEntities) {
+            priority += PRIORITY_OVER_LIMIT;
+        }
+        if (System.currentTimeMillis() - data.lastModified < RECENTLY_MODIFIED) {
+            priority += PRIORITY_MODIFIED;
+        }
+        return priority;
+    }
 
-        entityCount = (int) Arrays.stream(chunk.getEntities())
-                .filter(e -> !(e instanceof Player))
-                .count();
+    public boolean isChunkFlagged(ChunkData data) {
+        return chunkStore.getFlagRule().matches(data.redstoneCount, data.entityCount, data.activityRate, data.clearedByAdmin);
+    }
+
+    private void recordActivity(Block block) {
+        activityTracker.record(block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    private boolean needsScan(Chunk chunk) {
+        return needsScan(chunkStore.world(chunk.getWorld().getName()), ChunkCoordinate.key(chunk.getX(), chunk.getZ()));
+    }
 
-        data.redstoneCount.set(redstoneCount);
-        data.entityCount.set(entityCount);
-        data.lastScanned = System.currentTimeMillis();
+    private boolean needsScan(ChunkIndex index, long key) {
+        long lastScanned = index.lastScanned(key);
+        // 0 - чанк очищен администратором и не сканируется
+        return lastScanned < 0 || (lastScanned > 0 && System.currentTimeMillis() - lastScanned > consistencyScanInterval);
+    }
+
+    void requestLoadScan(Chunk chunk) {
+        if (needsScan(chunk)) {
+            scanQueue.offer(chunk.getWorld(), chunk.getX(), chunk.getZ(), scanPriority(chunkStore.get(chunk.getWorld().getName(), chunk.getX(), chunk.getZ())));
+        }
+    }
+
+    void adjustRedstoneCount(Block block, int delta) {
+        adjustRedstoneCount(block.getWorld(), block.getX() >> 4, block.getZ() >> 4, delta);
+    }
+
+    void adjustRedstoneCount(World world, int chunkX, int chunkZ, int delta) {
+        // Чанки без данных будут посчитаны полным сканированием
+        chunkStore.world(world.getName()).adjustRedstone(ChunkCoordinate.key(chunkX, chunkZ), delta, System.currentTimeMillis());
+    }
+
+    private void scanChunk(Chunk chunk) {
+        scanChunk(chunk, null);
+    }
+
+    private boolean scanChunk(Chunk chunk, Runnable onComplete) {
+        if (chunk == null || !chunk.isLoaded()) return false;
+
+        if (chunkStore.world(chunk.getWorld().getName()).lastScanned(ChunkCoordinate.key(chunk.getX(), chunk.getZ())) == 0) return false;
+
+        if (!chunkScanner.submit(chunk, onComplete)) {
+            // Лимит снимков исчерпан: чанк будет отсканирован позже
+            metrics.scansRejected.increment();
+            scanQueue.offer(chunk.getWorld(), chunk.getX(), chunk.getZ(), scanPriority(chunkStore.get(chunk.getWorld().getName(), chunk.getX(), chunk.getZ())));
+            return false;
+        }
+        return true;
+    }
+
+    // Вызывается из потоков сканера
+    void applyScanResults(String world, long[] chunkKeys, int[] redstoneCounts, int[] entityCounts, int count) {
+        chunkStore.world(world).applyScans(chunkKeys, redstoneCounts, entityCounts, count, System.currentTimeMillis());
     }
 
     public void setFreezeRedstone(boolean freeze, String initiator) {
         boolean previousState = this.freezeRedstone;
-        this.freezeRedstone = freeze;
+        if ("System".equals(initiator)) {
+            systemFreeze = freeze;
+        } else {
+            // Ручная разморозка снимает и системную заморозку
+            manualFreeze = freeze;
+            if (!freeze) systemFreeze = false;
+        }
+        this.freezeRedstone = manualFreeze || systemFreeze;
 
-        if (freeze && !previousState) {
+        if (freezeRedstone && !previousState) {
             getLogger().warning(getMessage("redstone.frozen_log", "Redstone frozen!"));
             cancelActiveRedstone();
-        } else if (!freeze && previousState) {
+        } else if (!freezeRedstone && previousState) {
             getLogger().warning(getMessage("redstone.unfrozen_log", "Redstone unfrozen!"));
         }
     }
 
+    /**
+     * Ставит в очередь сброса только чанки, где редстоун может работать: с активностью
+     * или превышением лимитов по данным плагина. Сами чанки обрабатываются по тикам.
+     */
     private void cancelActiveRedstone() {
         for (World world : getServer().getWorlds()) {
-            for (Chunk chunk : world.getLoadedChunks()) {
-                for (BlockState state : chunk.getTileEntities()) {
-                    if (isRedstoneComponent(state.getType())) {
-                        state.update(true, false);
-                    }
+            chunkStore.world(world.getName()).forEach((key, data) -> {
+                if (data.activityRate > 0 || isChunkFlagged(data)) {
+                    queueCancel(world, key, PRIORITY_CANCEL_FLAGGED + Math.min(data.activityRate, PRIORITY_ACTIVITY_CAP));
                 }
+            });
+        }
+        // Активность в ещё не отсканированных чанках
+        activityTracker.forEachActive((worldId, chunkKey, rate) -> {
+            World world = getServer().getWorld(worldId);
+            if (world != null) {
+                queueCancel(world, chunkKey, Math.min(rate, PRIORITY_ACTIVITY_CAP));
             }
+        });
+    }
+
+    private void queueCancel(World world, long chunkKey, int priority) {
+        int x = ChunkCoordinate.keyX(chunkKey);
+        int z = ChunkCoordinate.keyZ(chunkKey);
+        if (world.isChunkLoaded(x, z)) {
+            cancelQueue.offer(world, x, z, priority);
         }
     }
 
+    private void processCancelQueue(long deadline) {
+        // Хотя бы один чанк за тик, даже если бюджет уже израсходован
+        boolean first = true;
+        while (!cancelQueue.isEmpty() && (first || System.nanoTime() < deadline)) {
+            first = false;
+            long key = cancelQueue.poll();
+            World world = getServer().getWorld(cancelQueue.world(key));
+            int x = ScanQueue.chunkX(key);
+            int z = ScanQueue.chunkZ(key);
+            if (world == null) continue;
+            scheduler.runAtChunk(world, x, z, () -> {
+                if (world.isChunkLoaded(x, z)) {
+                    cancelActiveRedstone(world.getChunkAt(x, z));
+                }
+            });
+        }
+    }
+
+    private void cancelActiveRedstone(Chunk chunk) {
+        for (BlockState state : chunk.getTileEntities()) {
+            if (isRedstoneComponent(state.getType())) {
+                state.update(true, false);
+            }
+        }
+    }
+
+    public void freezeChunk(ChunkCoordinate coord) {
+        // Ручная заморозка остаётся, когда поэтапная реакция снимет свою ступень
+        escalation.disown(coord);
+        holdChunk(coord);
+    }
+
+    // Замораживает, не трогая состояние поэтапной реакции
+    void holdChunk(ChunkCoordinate coord) {
+        World world = getServer().getWorld(coord.world());
+        if (world == null) return;
+
+        if (frozenChunks.freezeChunk(world.getUID(), coord.x(), coord.z())) {
+            queueCancel(world, coord.key(), PRIORITY_CANCEL_FROZEN);
+        }
+    }
+
+    public void unfreezeChunk(ChunkCoordinate coord) {
+        releaseChunk(coord);
+        escalation.reset(coord);
+    }
+
+    // Снимает заморозку, не трогая состояние поэтапной реакции
+    void releaseChunk(ChunkCoordinate coord) {
+        World world = getServer().getWorld(coord.world());
+        if (world == null) return;
+
+        frozenChunks.unfreezeChunk(world.getUID(), coord.x(), coord.z());
+        // Отложенная отмена больше не нужна, если чанк не остался под глобальной заморозкой или заморозкой региона
+        if (!isFrozen(world.getUID(), coord.x(), coord.z())) {
+            cancelQueue.remove(world, coord.x(), coord.z());
+        }
+    }
+
+    public boolean isChunkFrozen(ChunkCoordinate coord) {
+        World world = getServer().getWorld(coord.world());
+        return world != null && frozenChunks.isChunkFrozen(world.getUID(), coord.x(), coord.z());
+    }
+
+    public EscalationPipeline.Tier getResponseTier(ChunkCoordinate coord) {
+        return escalation.getTier(coord);
+    }
+
+    private boolean isFrozen(Block block) {
+        return isFrozen(block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    private boolean isFrozen(UUID world, int chunkX, int chunkZ) {
+        return freezeRedstone || frozenChunks.isFrozen(world, chunkX, chunkZ);
+    }
+
+    // Активность записывается и в замороженных и ограниченных чанках: это спрос, по которому решается, усиливать ли реакцию.
+    // Бюджет списывают только изменения мощности сигнала; физика и поршни блокируются, когда он исчерпан
+    private boolean isThrottled(Block block) {
+        return escalation.isExhausted(block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    private boolean chargeSignal(Block block) {
+        return escalation.allowSignal(block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onBlockPhysics(BlockPhysicsEvent event) {
-        if (freezeRedstone && isRedstoneComponent(event.getBlock().getType())) {
+        Block block = event.getBlock();
+        if (handlePhysics(block.getType(), block.getWorld().getUID(), block.getX() >> 4, block.getZ() >> 4)) {
             event.setCancelled(true);
         }
     }
 
+    /**
+     * Тело {@link #onBlockPhysics} без объекта события; его же вызывает бенчмарк (benchmarks/).
+     * Возвращает true, если событие нужно отменить.
+     */
+    boolean handlePhysics(Material type, UUID world, int chunkX, int chunkZ) {
+        if (!isRedstoneComponent(type)) return false;
+
+        activityTracker.record(world, chunkX, chunkZ);
+        if (isFrozen(world, chunkX, chunkZ) || escalation.isExhausted(world, chunkX, chunkZ)) {
+            metrics.physicsCancelled.increment();
+            return true;
+        }
+        return false;
+    }
+
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onPistonExtend(BlockPistonExtendEvent event) {
-        if (freezeRedstone) {
+        recordActivity(event.getBlock());
+        if (isFrozen(event.getBlock()) || isThrottled(event.getBlock())) {
             event.setCancelled(true);
+            metrics.pistonsCancelled.increment();
         }
     }
 
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onPistonRetract(BlockPistonRetractEvent event) {
-        if (freezeRedstone) {
+        recordActivity(event.getBlock());
+        if (isFrozen(event.getBlock()) || isThrottled(event.getBlock())) {
             event.setCancelled(true);
+            metrics.pistonsCancelled.increment();
         }
     }
 
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onBlockRedstone(BlockRedstoneEvent event) {
-        if (freezeRedstone) {
+        if (event.getOldCurrent() != event.getNewCurrent()) {
+            recordActivity(event.getBlock());
+        }
+        if (isFrozen(event.getBlock())) {
+            if (event.getNewCurrent() != 0) metrics.signalsSuppressed.increment();
             event.setNewCurrent(0);
+        } else if (event.getOldCurrent() != event.getNewCurrent() && !chargeSignal(event.getBlock())) {
+            event.setNewCurrent(event.getOldCurrent());
+            metrics.signalsSuppressed.increment();
         }
     }
 
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
-        if (freezeRedstone && isRedstoneComponent(event.getBlock().getType())) {
+        if (isRedstoneComponent(event.getBlock().getType()) && isFrozen(event.getBlock())) {
             event.setCancelled(true);
             event.getPlayer().sendMessage(ChatColor.RED + getMessage("redstone.break_blocked", "Redstone is frozen! You cannot break blocks."));
         }
@@ -717,14 +1353,14 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
 
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
-        if (freezeRedstone && isRedstoneComponent(event.getBlock().getType())) {
+        if (isRedstoneComponent(event.getBlock().getType()) && isFrozen(event.getBlock())) {
             event.setCancelled(true);
             event.getPlayer().sendMessage(ChatColor.RED + getMessage("redstone.place_blocked", "Redstone is frozen! You cannot place blocks."));
         }
     }
 
-    public Map<ChunkCoordinate, ChunkData> getChunkMap() {
-        return chunkMap;
+    public ChunkStore getChunkStore() {
+        return chunkStore;
     }
 
     public int getMaxRedstone() {
@@ -744,12 +1380,17 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
     }
 
     public void openChunkDetails(Player player, ChunkCoordinate coord) {
-        ChunkData data = chunkMap.get(coord);
+        ChunkData data = chunkStore.get(coord);
         if (data != null) {
             player.sendMessage(ChatColor.GOLD + getMessage("chunk.details.header", "Chunk Details {coord}").replace("{coord}", coord.toDisplayString()));
             player.sendMessage(ChatColor.GRAY + getMessage("chunk.details.world", "World: {world}").replace("{world}", coord.world));
-            player.sendMessage(ChatColor.RED + getMessage("chunk.details.redstone", "Redstone: {count}").replace("{count}", String.valueOf(data.redstoneCount.get())));
-            player.sendMessage(ChatColor.GREEN + getMessage("chunk.details.entities", "Entities: {count}").replace("{count}", String.valueOf(data.entityCount.get())));
+            player.sendMessage(ChatColor.RED + getMessage("chunk.details.redstone", "Redstone: {count}").replace("{count}", String.valueOf(data.redstoneCount)));
+            player.sendMessage(ChatColor.GREEN + getMessage("chunk.details.entities", "Entities: {count}").replace("{count}", String.valueOf(data.entityCount)));
+            player.sendMessage(ChatColor.AQUA + getMessage("chunk.details.activity", "Activity: {rate}/s").replace("{rate}", String.valueOf(data.activityRate)));
+            if (data.tickCostMicros > 0) {
+                player.sendMessage(ChatColor.LIGHT_PURPLE + getMessage("chunk.details.tick_cost", "Listener dispatch: {ms} ms")
+                        .replace("{ms}", String.format(Locale.ROOT, "%.2f", data.tickCostMicros / 1000.0)));
+            }
         } else {
             player.sendMessage(ChatColor.RED + getMessage("chunk.details.not_found", "Chunk data not found!"));
         }
@@ -758,84 +1399,117 @@ public class RedstoneDetector extends JavaPlugin implements Listener, TabComplet
     public void teleportToChunk(Player player, ChunkCoordinate coord) {
         World world = getServer().getWorld(coord.world);
         if (world != null) {
-            Location loc = new Location(
-                    world,
-                    coord.x * 16 + 8,
-                    world.getHighestBlockYAt(coord.x * 16 + 8, coord.z * 16 + 8) + 1,
-                    coord.z * 16 + 8
-            );
-            player.teleport(loc);
-            player.sendMessage(ChatColor.GREEN + getMessage("chunk.teleport_success", "Teleported to chunk {coord}").replace("{coord}", coord.toDisplayString()));
+            // Высота считается в потоке региона чанка
+            scheduler.runAtChunk(world, coord.x, coord.z, () -> {
+                Location loc = new Location(
+                        world,
+                        coord.x * 16 + 8,
+                        world.getHighestBlockYAt(coord.x * 16 + 8, coord.z * 16 + 8) + 1,
+                        coord.z * 16 + 8
+                );
+                scheduler.teleport(player, loc);
+                player.sendMessage(ChatColor.GREEN + getMessage("chunk.teleport_success", "Teleported to chunk {coord}").replace("{coord}", coord.toDisplayString()));
+            });
         } else {
             player.sendMessage(ChatColor.RED + getMessage("chunk.world_not_found", "World '{world}' not found!").replace("{world}", coord.world));
         }
     }
 
     public void disableRedstoneInChunk(Player player, ChunkCoordinate coord) {
-        disableRedstoneInChunk(coord, player.getName());
-        player.sendMessage(ChatColor.GREEN + getMessage("chunk.redstone_removed", "Redstone removed in chunk {coord}").replace("{coord}", coord.toDisplayString()));
+        if (disableRedstoneInChunk(coord, player)) {
+            player.sendMessage(ChatColor.YELLOW + getMessage("chunk.redstone_removing", "Removing redstone in chunk {coord}...").replace("{coord}", coord.toDisplayString()));
+        }
     }
 
-    public void disableRedstoneInChunk(ChunkCoordinate coord, String initiator) {
+    /**
+     * Запускает удаление редстоуна в чанке; блоки снимаются в течение нескольких тиков.
+     */
+    public boolean disableRedstoneInChunk(ChunkCoordinate coord, Player initiator) {
         World world = getServer().getWorld(coord.world);
-        if (world == null) return;
-
-        Chunk chunk = world.getChunkAt(coord.x, coord.z);
-        if (!chunk.isLoaded()) return;
+        if (world == null) return false;
+        if (!world.isChunkLoaded(coord.x, coord.z)) return false;
+        if (isEditInProgress(coord, initiator)) return false;
+
+        scheduler.runAtChunk(world, coord.x, coord.z, () -> {
+            if (!world.isChunkLoaded(coord.x, coord.z)) return;
+            Chunk chunk = world.getChunkAt(coord.x, coord.z);
+            int[] positions = ChunkScanner.findRedstone(chunk.getChunkSnapshot(false, false, false), world.getMinHeight(), world.getMaxHeight());
+            editJobs.putIfAbsent(coord, BlockEditJob.remove(this, coord, initiator, world, positions));
+        });
+        return true;
+    }
 
-        Map<Location, Material> backup = new HashMap<>();
-        int removed = 0;
+    void onRedstoneRemoved(ChunkCoordinate coord, RedstoneBackupStore.Backup backup, int removed, boolean complete) {
+        if (removed == 0) return;
 
-        for (int y = world.getMinHeight(); y < world.getMaxHeight(); y++) {
-            for (int x = 0; x < 16; x++) {
-                for (int z = 0; z < 16; z++) {
-                    Block block = chunk.getBlock(x, y, z);
-                    if (isRedstoneComponent(block.getType())) {
-                        backup.put(block.getLocation(), block.getType());
-                        block.setType(Material.AIR);
-                        removed++;
-                    }
-                }
-            }
+        backupStore.save(coord, backup);
+        // После частичного удаления в чанке остался редстоун, он продолжает сканироваться
+        if (complete && chunkStore.world(coord.world()).markCleared(coord.key(), System.currentTimeMillis())) {
+            scheduler.runLater(() -> chunkStore.remove(coord), CLEARED_HOLD / 50);
         }
+        getLogger().info(getMessage("chunk.redstone_removed_log", "Removed {count} redstone blocks in chunk: {coord}")
+                .replace("{count}", String.valueOf(removed))
+                .replace("{coord}", coord.toDisplayString()));
+    }
 
-        if (removed > 0) {
-            redstoneBackups.put(coord, backup);
-
-            ChunkData data = chunkMap.get(coord);
-            if (data != null) {
-                data.clearedByAdmin = true;
-                data.clearedTime = System.currentTimeMillis();
-                Bukkit.getScheduler().runTaskLater(this, () -> chunkMap.remove(coord), 20 * 60 * 10);
-            }
-            getLogger().info(getMessage("chunk.redstone_removed_log", "Removed {count} redstone blocks in chunk: {coord}")
-                    .replace("{count}", String.valueOf(removed))
-                    .replace("{coord}", coord.toDisplayString()));
+    public void restoreRedstoneInChunk(Player player, ChunkCoordinate coord) {
+        if (restoreRedstoneInChunk(coord, player)) {
+            player.sendMessage(ChatColor.YELLOW + getMessage("chunk.redstone_restoring", "Restoring redstone in chunk {coord}...").replace("{coord}", coord.toDisplayString()));
         }
     }
 
-    public void restoreRedstoneInChunk(Player player, ChunkCoordinate coord) {
-        restoreRedstoneInChunk(coord, player.getName());
-        player.sendMessage(ChatColor.GREEN + getMessage("chunk.redstone_restored", "Redstone restored in chunk {coord}").replace("{coord}", coord.toDisplayString()));
+    /**
+     * Запускает восстановление редстоуна из резервной копии; блоки ставятся в течение нескольких тиков.
+     */
+    public boolean restoreRedstoneInChunk(ChunkCoordinate coord, Player initiator) {
+        World world = getServer().getWorld(coord.world);
+        if (world == null) return false;
+        if (isEditInProgress(coord, initiator)) return false;
+        if (!backupStore.has(coord)) return false;
+
+        // Копия читается в потоке резервных копий, задание ставится уже в потоке чанка
+        backupStore.load(coord).whenComplete((backup, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                getLogger().severe(getMessage("chunk.backup_load_failed", "Could not read redstone backup for chunk {coord}: ")
+                        .replace("{coord}", coord.toDisplayString()) + cause.getMessage());
+                return;
+            }
+            if (backup == null || backup.size() == 0) return;
+
+            scheduler.runAtChunk(world, coord.x, coord.z, () -> {
+                // Чанк загружается для восстановления, как и раньше
+                world.getChunkAt(coord.x, coord.z);
+                editJobs.putIfAbsent(coord, BlockEditJob.restore(this, coord, initiator, world, backup));
+            });
+        });
+        return true;
     }
 
-    public void restoreRedstoneInChunk(ChunkCoordinate coord, String initiator) {
-        Map<Location, Material> backup = redstoneBackups.get(coord);
-        if (backup == null || backup.isEmpty()) {
+    void onRedstoneRestored(ChunkCoordinate coord, RedstoneBackupStore.Backup remaining) {
+        // Невосстановленные блоки (позиция занята или чанк выгрузился) остаются в копии для повторной попытки
+        if (remaining.size() == 0) {
+            backupStore.delete(coord);
+        } else {
+            backupStore.replace(coord, remaining);
+            getLogger().info(getMessage("chunk.redstone_restored_partial_log", "Redstone partially restored in chunk {coord}, {count} blocks left in the backup")
+                    .replace("{coord}", coord.toDisplayString())
+                    .replace("{count}", String.valueOf(remaining.size())));
             return;
         }
+        getLogger().info(getMessage("chunk.redstone_restored_log", "Redstone restored in chunk: {coord}").replace("{coord}", coord.toDisplayString()));
+    }
 
-        int restored = 0;
-        for (Map.Entry<Location, Material> entry : backup.entrySet()) {
-            Block block = entry.getKey().getBlock();
-            if (block.isEmpty()) {
-                block.setType(entry.getValue());
-                restored++;
-            }
+    private boolean isEditInProgress(ChunkCoordinate coord, Player initiator) {
+        if (!editJobs.containsKey(coord)) return false;
+        if (initiator != null) {
+            initiator.sendMessage(ChatColor.RED + getMessage("chunk.edit_in_progress", "Chunk {coord} is already being edited, please wait.").replace("{coord}", coord.toDisplayString()));
         }
+        return true;
+    }
 
-        redstoneBackups.remove(coord);
-        getLogger().info(getMessage("chunk.redstone_restored_log", "Redstone restored in chunk: {coord}").replace("{coord}", coord.toDisplayString()));
+    public BlockEditJob getEditJob(ChunkCoordinate coord) {
+        return editJobs.get(coord);
     }
 
     @EventHandler
@@ -0,0 +1,58 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Material;
+
+/**
+ * Набор материалов, которые считаются редстоун-компонентами.
+ * Проверка - чтение из массива по ordinal, без хеширования: она вызывается
+ * для каждого блока при сканировании и в каждом событии физики.
+ */
+final class RedstoneMaterials {
+
+    private static final boolean[] REDSTONE = new boolean[Material.values().length];
+
+    static {
+        Material[] materials = {
+                Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR,
+                Material.PISTON, Material.STICKY_PISTON, Material.OBSERVER,
+                Material.DISPENSER, Material.DROPPER, Material.HOPPER,
+                Material.REDSTONE_TORCH, Material.REDSTONE_BLOCK, Material.LEVER,
+                Material.STONE_BUTTON, Material.OAK_BUTTON, Material.TRIPWIRE_HOOK,
+                Material.TARGET
+        };
+        for (Material material : materials) {
+            REDSTONE[material.ordinal()] = true;
+        }
+    }
+
+    private RedstoneMaterials() {
+    }
+
+    static boolean contains(Material material) {
+        return material != null && REDSTONE[material.ordinal()];
+    }
+}
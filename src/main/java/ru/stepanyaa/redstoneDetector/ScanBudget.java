@@ -0,0 +1,73 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+/**
+ * Адаптивный бюджет времени на сканирование за тик. Бюджет уменьшается вдвое, пока MSPT выше целевого,
+ * и плавно растёт при запасе; на Paper он дополнительно ограничен оставшимся до 50 мс временем тика.
+ */
+public class ScanBudget {
+
+    private static final double TICK_MS = 50.0;
+
+    private final TickMonitor tickMonitor;
+    private long minNanos;
+    private long maxNanos;
+    private double targetMspt;
+    private long budgetNanos;
+
+    public ScanBudget(TickMonitor tickMonitor) {
+        this.tickMonitor = tickMonitor;
+    }
+
+    public void configure(double minMs, double maxMs, double targetMspt) {
+        this.minNanos = (long) (Math.max(0.0, minMs) * 1_000_000);
+        this.maxNanos = Math.max(minNanos, (long) (maxMs * 1_000_000));
+        this.targetMspt = targetMspt;
+        this.budgetNanos = Math.max(minNanos, Math.min(maxNanos, budgetNanos == 0 ? maxNanos : budgetNanos));
+    }
+
+    /**
+     * Пересчитывает бюджет по последнему MSPT и возвращает его в наносекундах.
+     */
+    public long next() {
+        double mspt = tickMonitor.getMspt();
+        boolean measured = tickMonitor.hasTickTimeApi();
+        // Без API времени тика интервал не опускается ниже 50 мс, поэтому перегрузкой считается только его превышение
+        double overload = measured ? targetMspt : TICK_MS + 1.0;
+
+        if (mspt > overload) {
+            budgetNanos = Math.max(minNanos, budgetNanos / 2);
+        } else {
+            budgetNanos = Math.min(maxNanos, budgetNanos + Math.max(budgetNanos / 8, 50_000));
+        }
+
+        if (measured) {
+            long headroom = (long) ((targetMspt - mspt) * 1_000_000);
+            return Math.max(minNanos, Math.min(budgetNanos, headroom));
+        }
+        return budgetNanos;
+    }
+}
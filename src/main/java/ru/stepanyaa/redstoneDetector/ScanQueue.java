@@ -0,0 +1,193 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Очередь сканирования с приоритетами без дубликатов. Каждый элемент - упакованный ключ
+ * (индекс мира, x, z) в двоичной куче; повторное добавление чанка только повышает его приоритет.
+ * Ссылки на {@code Chunk} не хранятся, выгруженные чанки отбрасываются при извлечении.
+ * Методы синхронизированы: на Folia чанки добавляются из потоков регионов.
+ */
+public class ScanQueue {
+
+    // Координаты чанков в пределах границы мира умещаются в 22 бита со знаком
+    private static final int COORD_BITS = 22;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+
+    private final List<UUID> worldIds = new ArrayList<>();
+    private final Map<UUID, Integer> worldIndexes = new HashMap<>();
+    private final LongIntHashMap positions = new LongIntHashMap(-1);
+    private long[] heapKeys = new long[64];
+    private int[] heapPriorities = new int[64];
+    private int size;
+
+    /**
+     * Добавляет чанк или повышает его приоритет, если он уже в очереди.
+     */
+    public synchronized void offer(World world, int chunkX, int chunkZ, int priority) {
+        long key = pack(worldIndex(world.getUID()), chunkX, chunkZ);
+        int position = positions.get(key);
+        if (position >= 0) {
+            if (priority > heapPriorities[position]) {
+                heapPriorities[position] = priority;
+                siftUp(position);
+            }
+            return;
+        }
+        if (size == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, size * 2);
+            heapPriorities = Arrays.copyOf(heapPriorities, size * 2);
+        }
+        heapKeys[size] = key;
+        heapPriorities[size] = priority;
+        positions.put(key, size);
+        siftUp(size++);
+    }
+
+    /**
+     * Извлекает ключ с наивысшим приоритетом. Вызывать только при {@code !isEmpty()}.
+     */
+    public synchronized long poll() {
+        long top = heapKeys[0];
+        positions.remove(top);
+        size--;
+        if (size > 0) {
+            heapKeys[0] = heapKeys[size];
+            heapPriorities[0] = heapPriorities[size];
+            positions.put(heapKeys[0], 0);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Убирает чанк из очереди, если он в ней есть.
+     */
+    public synchronized void remove(World world, int chunkX, int chunkZ) {
+        Integer worldIndex = worldIndexes.get(world.getUID());
+        if (worldIndex == null) return;
+
+        long key = pack(worldIndex, chunkX, chunkZ);
+        int position = positions.get(key);
+        if (position < 0) return;
+
+        positions.remove(key);
+        size--;
+        if (position < size) {
+            heapKeys[position] = heapKeys[size];
+            heapPriorities[position] = heapPriorities[size];
+            positions.put(heapKeys[position], position);
+            siftDown(position);
+            siftUp(position);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        positions.clear();
+        size = 0;
+    }
+
+    public synchronized UUID world(long key) {
+        return worldIds.get((int) (key >>> (COORD_BITS * 2)));
+    }
+
+    public static int chunkX(long key) {
+        return (int) ((key >> COORD_BITS) << (64 - COORD_BITS) >> (64 - COORD_BITS));
+    }
+
+    public static int chunkZ(long key) {
+        return (int) (key << (64 - COORD_BITS) >> (64 - COORD_BITS));
+    }
+
+    private static long pack(int worldIndex, int chunkX, int chunkZ) {
+        return ((long) worldIndex << (COORD_BITS * 2)) | ((chunkX & COORD_MASK) << COORD_BITS) | (chunkZ & COORD_MASK);
+    }
+
+    private int worldIndex(UUID world) {
+        Integer index = worldIndexes.get(world);
+        if (index == null) {
+            index = worldIds.size();
+            worldIds.add(world);
+            worldIndexes.put(world, index);
+        }
+        return index;
+    }
+
+    private void siftUp(int index) {
+        long key = heapKeys[index];
+        int priority = heapPriorities[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heapPriorities[parent] >= priority) break;
+            move(parent, index);
+            index = parent;
+        }
+        heapKeys[index] = key;
+        heapPriorities[index] = priority;
+        positions.put(key, index);
+    }
+
+    private void siftDown(int index) {
+        long key = heapKeys[index];
+        int priority = heapPriorities[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && heapPriorities[right] > heapPriorities[child]) {
+                child = right;
+            }
+            if (priority >= heapPriorities[child]) break;
+            move(child, index);
+            index = child;
+        }
+        heapKeys[index] = key;
+        heapPriorities[index] = priority;
+        positions.put(key, index);
+    }
+
+    private void move(int from, int to) {
+        heapKeys[to] = heapKeys[from];
+        heapPriorities[to] = heapPriorities[from];
+        positions.put(heapKeys[to], to);
+    }
+}
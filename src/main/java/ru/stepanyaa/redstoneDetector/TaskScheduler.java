@@ -0,0 +1,178 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Планировщик для Bukkit и Folia. На Folia работа с блоками чанка выполняется в потоке региона,
+ * которому принадлежит чанк, а периодические задачи - в глобальном регионе. Плагин собирается
+ * против Paper 1.16.5, поэтому планировщики Folia вызываются через рефлексию.
+ */
+public class TaskScheduler {
+
+    private static final boolean FOLIA = classExists("io.papermc.paper.threadedregions.RegionizedServer");
+
+    private final Plugin plugin;
+    // Задачи, отправленные в регионы и ещё не выполненные; на Bukkit всегда 0
+    private final AtomicInteger pendingRegionTasks = new AtomicInteger();
+
+    private Object globalScheduler;
+    private Object regionScheduler;
+    private Object asyncScheduler;
+    private Method globalRunAtFixedRate;
+    private Method globalRunDelayed;
+    private Method globalExecute;
+    private Method globalCancelTasks;
+    private Method regionExecute;
+    private Method asyncCancelTasks;
+
+    public TaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        if (!FOLIA) return;
+
+        try {
+            Class<?> global = Class.forName("io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler");
+            Class<?> region = Class.forName("io.papermc.paper.threadedregions.scheduler.RegionScheduler");
+            Class<?> async = Class.forName("io.papermc.paper.threadedregions.scheduler.AsyncScheduler");
+            globalScheduler = Bukkit.class.getMethod("getGlobalRegionScheduler").invoke(null);
+            regionScheduler = Bukkit.class.getMethod("getRegionScheduler").invoke(null);
+            asyncScheduler = Bukkit.class.getMethod("getAsyncScheduler").invoke(null);
+            globalRunAtFixedRate = global.getMethod("runAtFixedRate", Plugin.class, Consumer.class, long.class, long.class);
+            globalRunDelayed = global.getMethod("runDelayed", Plugin.class, Consumer.class, long.class);
+            globalExecute = global.getMethod("execute", Plugin.class, Runnable.class);
+            globalCancelTasks = global.getMethod("cancelTasks", Plugin.class);
+            regionExecute = region.getMethod("execute", Plugin.class, World.class, int.class, int.class, Runnable.class);
+            asyncCancelTasks = async.getMethod("cancelTasks", Plugin.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Folia schedulers are not available", e);
+        }
+    }
+
+    public static boolean isFolia() {
+        return FOLIA;
+    }
+
+    /**
+     * Периодическая задача в главном потоке (на Folia - в глобальном регионе).
+     */
+    public void runTimer(Runnable task, long delayTicks, long periodTicks) {
+        if (!FOLIA) {
+            Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+            return;
+        }
+        Consumer<Object> consumer = scheduled -> task.run();
+        invoke(globalRunAtFixedRate, globalScheduler, plugin, consumer, Math.max(1, delayTicks), periodTicks);
+    }
+
+    public void runLater(Runnable task, long delayTicks) {
+        if (!FOLIA) {
+            Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
+            return;
+        }
+        Consumer<Object> consumer = scheduled -> task.run();
+        invoke(globalRunDelayed, globalScheduler, plugin, consumer, Math.max(1, delayTicks));
+    }
+
+    /**
+     * Выполняет задачу в потоке, владеющем чанком. На Bukkit из главного потока задача выполняется сразу.
+     */
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task) {
+        if (!FOLIA) {
+            if (Bukkit.isPrimaryThread()) {
+                task.run();
+            } else {
+                Bukkit.getScheduler().runTask(plugin, task);
+            }
+            return;
+        }
+        pendingRegionTasks.incrementAndGet();
+        Runnable counted = () -> {
+            try {
+                task.run();
+            } finally {
+                pendingRegionTasks.decrementAndGet();
+            }
+        };
+        try {
+            invoke(regionExecute, regionScheduler, plugin, world, chunkX, chunkZ, counted);
+        } catch (RuntimeException e) {
+            pendingRegionTasks.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public int pendingRegionTasks() {
+        return pendingRegionTasks.get();
+    }
+
+    // На Folia телепорт из чужого потока возможен только асинхронно
+    public void teleport(Player player, Location location) {
+        if (FOLIA) {
+            player.teleportAsync(location);
+        } else {
+            player.teleport(location);
+        }
+    }
+
+    public void cancelTasks() {
+        if (!FOLIA) {
+            Bukkit.getScheduler().cancelTasks(plugin);
+            return;
+        }
+        invoke(globalCancelTasks, globalScheduler, plugin);
+        invoke(asyncCancelTasks, asyncScheduler, plugin);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean classExists(String name) {
+        try {
+            Class.forName(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Bukkit;
+
+import java.util.Arrays;
+
+/**
+ * Оценка MSPT сервера. На Paper используется среднее время тика из API сервера,
+ * иначе - сглаженный интервал между вызовами {@link #tick()}, который растёт выше 50 мс только при перегрузке.
+ * <p>
+ * Для обнаружения лагов считается перцентиль за короткое окно: он реагирует за секунды, в отличие от
+ * минутного среднего TPS. На Paper он берётся из длительностей последних 100 тиков сервера
+ * ({@code Bukkit.getTickTimes()}), иначе - из кольцевого буфера интервалов между вызовами {@link #tick()}
+ * (в микросекундах). Интервал не бывает меньше 50 мс, поэтому в этом режиме пороги
+ * пересчитываются методом {@link #threshold}.
+ */
+public class TickMonitor {
+
+    private static final double SMOOTHING = 0.2;
+    private static final int MAX_SAMPLES = 60 * 20;
+    private static final double TICK_MS = 50.0;
+    // Запас над полом интервалов: задача планировщика запускается с неточностью в несколько миллисекунд
+    private static final double INTERVAL_MARGIN_MS = 5.0;
+
+    private boolean tickTimeApi = true;
+    private boolean tickTimesApi = true;
+    // Последний перцентиль посчитан по длительностям тиков сервера, а не по интервалам
+    private boolean measuredTicks = false;
+    private long[] sortedTicks = new long[0];
+    private long lastTickNanos = 0;
+    private double intervalMspt = 50.0;
+
+    private final int[] samples = new int[MAX_SAMPLES];
+    private final int[] sorted = new int[MAX_SAMPLES];
+    private int head = 0;
+    private int count = 0;
+    private int window = 100;
+
+    // Вызывается один раз за тик из задачи планировщика
+    public void tick() {
+        long now = System.nanoTime();
+        if (lastTickNanos != 0) {
+            long intervalNanos = now - lastTickNanos;
+            double interval = intervalNanos / 1_000_000.0;
+            intervalMspt += (interval - intervalMspt) * SMOOTHING;
+
+            samples[head] = (int) Math.min(Integer.MAX_VALUE, intervalNanos / 1000);
+            head = (head + 1) % MAX_SAMPLES;
+            if (count < MAX_SAMPLES) count++;
+        }
+        lastTickNanos = now;
+    }
+
+    public void setWindowSeconds(int seconds) {
+        window = Math.max(20, Math.min(MAX_SAMPLES, seconds * 20));
+    }
+
+    // Окно заполнено, перцентиль имеет смысл
+    public boolean hasFullWindow() {
+        return count >= window;
+    }
+
+    /**
+     * Перцентиль длительности тика за окно в миллисекундах, например 0.95 для p95.
+     * На Paper окно - последние 100 тиков сервера независимо от window-seconds.
+     */
+    public double getPercentileMspt(double percentile) {
+        double measured = tickTimesPercentile(percentile);
+        measuredTicks = measured >= 0;
+        if (measuredTicks) return measured;
+
+        int n = Math.min(count, window);
+        if (n == 0) return 50.0;
+
+        for (int i = 0; i < n; i++) {
+            sorted[i] = samples[Math.floorMod(head - 1 - i, MAX_SAMPLES)];
+        }
+        Arrays.sort(sorted, 0, n);
+        int rank = (int) Math.ceil(percentile * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, rank))] / 1000.0;
+    }
+
+    // Порядок значений в массиве Paper не важен для перцентиля; -1, если API нет или тиков ещё не было
+    private double tickTimesPercentile(double percentile) {
+        if (!tickTimesApi) return -1;
+        long[] times;
+        try {
+            times = Bukkit.getTickTimes();
+        } catch (NoSuchMethodError e) {
+            tickTimesApi = false;
+            return -1;
+        }
+        if (times == null) return -1;
+        if (sortedTicks.length < times.length) sortedTicks = new long[times.length];
+        int n = 0;
+        for (long time : times) {
+            // Нули - ячейки тиков, которых ещё не было
+            if (time > 0) sortedTicks[n++] = time;
+        }
+        if (n == 0) return -1;
+        Arrays.sort(sortedTicks, 0, n);
+        int rank = (int) Math.ceil(percentile * n) - 1;
+        return sortedTicks[Math.max(0, Math.min(n - 1, rank))] / 1_000_000.0;
+    }
+
+    /**
+     * Порог MSPT для сравнения с {@link #getPercentileMspt}. По длительностям тиков порог не меняется;
+     * по интервалам между тиками значения ниже 50 мс не наблюдаются, поэтому порог отсчитывается от этого пола.
+     */
+    public double threshold(double mspt) {
+        return measuredTicks ? mspt : Math.max(mspt, TICK_MS + INTERVAL_MARGIN_MS);
+    }
+
+    public boolean hasTickTimeApi() {
+        return tickTimeApi;
+    }
+
+    public double getMspt() {
+        if (tickTimeApi) {
+            try {
+                return Bukkit.getAverageTickTime();
+            } catch (NoSuchMethodError e) {
+                tickTimeApi = false;
+            }
+        }
+        return intervalMspt;
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * MIT License
+ *
+ * RedstoneDetector
+ * Copyright (c) 2025 Stepanyaa
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ru.stepanyaa.redstoneDetector;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockRedstoneEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.inventory.Inventory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оценивает, сколько времени слушатели плагинов тратят на редстоун-события каждого чанка.
+ * Замеряется время между обработчиками LOWEST и MONITOR одного события, то есть работа всех
+ * плагинов-слушателей, а не полная стоимость тика: ванильные обновления блоков сюда не входят.
+ * Вложенные события любого типа вычитаются из внешнего. Замеряется каждое N-е событие
+ * каждого типа, результат умножается на N.
+ */
+public class TickProfiler implements Listener {
+
+    public interface CostConsumer {
+        void accept(String world, long chunkKey, int microsPerTick);
+    }
+
+    private static final int PHYSICS = 0;
+    private static final int REDSTONE = 1;
+    private static final int PISTON_EXTEND = 2;
+    private static final int PISTON_RETRACT = 3;
+    private static final int HOPPER = 4;
+    private static final int TYPES = 5;
+    private static final int ACCUMULATOR_CAPACITY = 4096;
+
+    // Общий для всех типов событий стек замеров одного потока; 0 в starts означает, что время не засекалось.
+    // Вложенные события внутри замеряемого засекаются всегда, чтобы вычесть их из внешнего, но записываются только sampled
+    private static final class Frames {
+        long[] starts = new long[8];
+        long[] children = new long[8];
+        int[] types = new int[8];
+        boolean[] sampled = new boolean[8];
+        int depth;
+        final int[] counters = new int[TYPES];
+    }
+
+    private final ThreadLocal<Frames> frames = ThreadLocal.withInitial(Frames::new);
+    private volatile Map<String, ChunkCostAccumulator> current = new ConcurrentHashMap<>();
+    private final Map<String, LongHashSet> reported = new HashMap<>();
+    private volatile boolean enabled = false;
+    private volatile int sampleInterval = 10;
+    private int ticks = 0;
+
+    public void configure(boolean enabled, double sampleRate) {
+        this.enabled = enabled;
+        this.sampleInterval = sampleRate <= 0 ? 1 : (int) Math.max(1, Math.min(1000, Math.round(1.0 / sampleRate)));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void tick() {
+        ticks++;
+    }
+
+    /**
+     * Передаёт среднюю стоимость за тик с прошлой публикации. Чанкам, которые были в прошлой публикации,
+     * но без событий в этой, передаётся 0. Вызывается с основного потока.
+     */
+    public void publish(CostConsumer consumer) {
+        Map<String, ChunkCostAccumulator> drained = current;
+        current = new ConcurrentHashMap<>();
+        int elapsedTicks = Math.max(1, ticks);
+        ticks = 0;
+
+        Map<String, LongHashSet> previous = new HashMap<>(reported);
+        reported.clear();
+        for (Map.Entry<String, ChunkCostAccumulator> entry : drained.entrySet()) {
+            String world = entry.getKey();
+            LongHashSet keys = new LongHashSet();
+            LongHashSet old = previous.get(world);
+            entry.getValue().forEach((key, nanos) -> {
+                int micros = (int) Math.min(Integer.MAX_VALUE, nanos / elapsedTicks / 1000);
+                consumer.accept(world, key, micros);
+                keys.add(key);
+                if (old != null) old.remove(key);
+            });
+            reported.put(world, keys);
+        }
+        for (Map.Entry<String, LongHashSet> entry : previous.entrySet()) {
+            String world = entry.getKey();
+            for (long key : entry.getValue().toArray()) {
+                consumer.accept(world, key, 0);
+            }
+        }
+    }
+
+    private void begin(int type) {
+        if (!enabled) return;
+        Frames stack = frames.get();
+        if (stack.depth == stack.starts.length) {
+            stack.starts = Arrays.copyOf(stack.starts, stack.depth << 1);
+            stack.children = Arrays.copyOf(stack.children, stack.depth << 1);
+            stack.types = Arrays.copyOf(stack.types, stack.depth << 1);
+            stack.sampled = Arrays.copyOf(stack.sampled, stack.depth << 1);
+        }
+        boolean sample = ++stack.counters[type] >= sampleInterval;
+        if (sample) stack.counters[type] = 0;
+        boolean timed = sample || (stack.depth > 0 && stack.starts[stack.depth - 1] != 0);
+        stack.starts[stack.depth] = timed ? System.nanoTime() : 0;
+        stack.sampled[stack.depth] = sample;
+        stack.children[stack.depth] = 0;
+        stack.types[stack.depth] = type;
+        stack.depth++;
+    }
+
+    // Возвращает собственное время события без вложенных либо -1, если событие не замерялось
+    private long end(int type) {
+        if (!enabled) return -1;
+        Frames stack = frames.get();
+        if (stack.depth == 0) return -1;
+        int level = --stack.depth;
+        if (stack.types[level] != type) {
+            // Пары LOWEST/MONITOR разошлись (например, профилировщик включили посреди события) - начинаем заново
+            stack.depth = 0;
+            return -1;
+        }
+        long start = stack.starts[level];
+        if (start == 0) return -1;
+        long elapsed = System.nanoTime() - start;
+        if (level > 0) stack.children[level - 1] += elapsed;
+        return stack.sampled[level] ? Math.max(0, elapsed - stack.children[level]) : -1;
+    }
+
+    private void record(World world, int x, int z, long nanos) {
+        if (nanos < 0 || world == null) return;
+        ChunkCostAccumulator accumulator = current.computeIfAbsent(world.getName(),
+                name -> new ChunkCostAccumulator(ACCUMULATOR_CAPACITY));
+        accumulator.add(RedstoneDetector.ChunkCoordinate.key(x >> 4, z >> 4), nanos * sampleInterval);
+    }
+
+    private void record(Block block, long nanos) {
+        if (nanos >= 0 && block != null) {
+            record(block.getWorld(), block.getX(), block.getZ(), nanos);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPhysicsStart(BlockPhysicsEvent event) {
+        begin(PHYSICS);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPhysicsEnd(BlockPhysicsEvent event) {
+        record(event.getBlock(), end(PHYSICS));
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onRedstoneStart(BlockRedstoneEvent event) {
+        begin(REDSTONE);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRedstoneEnd(BlockRedstoneEvent event) {
+        record(event.getBlock(), end(REDSTONE));
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPistonExtendStart(BlockPistonExtendEvent event) {
+        begin(PISTON_EXTEND);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPistonExtendEnd(BlockPistonExtendEvent event) {
+        record(event.getBlock(), end(PISTON_EXTEND));
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPistonRetractStart(BlockPistonRetractEvent event) {
+        begin(PISTON_RETRACT);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPistonRetractEnd(BlockPistonRetractEvent event) {
+        record(event.getBlock(), end(PISTON_RETRACT));
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onHopperStart(InventoryMoveItemEvent event) {
+        begin(HOPPER);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onHopperEnd(InventoryMoveItemEvent event) {
+        long nanos = end(HOPPER);
+        if (nanos < 0) return;
+        Location location = locationOf(event.getSource());
+        if (location == null) location = locationOf(event.getDestination());
+        if (location != null) {
+            record(location.getWorld(), location.getBlockX(), location.getBlockZ(), nanos);
+        }
+    }
+
+    private static Location locationOf(Inventory inventory) {
+        return inventory != null ? inventory.getLocation() : null;
+    }
+}